@@ -1,30 +1,314 @@
 package com.pdfsegmenter;
 
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.batch.BatchInputs;
+import com.pdfsegmenter.batch.BatchResult;
+import com.pdfsegmenter.batch.BatchSegmenter;
+import com.pdfsegmenter.cache.AnalysisCache;
+import com.pdfsegmenter.index.LayoutIndexWriter;
+import com.pdfsegmenter.io.DocumentLoader;
+import com.pdfsegmenter.io.MemoryPolicy;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
 import com.pdfsegmenter.segmenter.PDFSegmenter;
+import com.pdfsegmenter.segmenter.Segment;
+import com.pdfsegmenter.segmenter.SegmentationPlan;
+import com.pdfsegmenter.segmenter.SegmentationReport;
+import com.pdfsegmenter.server.SegmentationServer;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
 public class App {
     
+    private static final long DEFAULT_CACHE_MAX_BYTES = 1L << 30;
+    
     public static void main(String[] args) {
-        if (args.length < 2) {
+        List<String> positional = new ArrayList<>();
+        int threads = 1;
+        int writerThreads = 1;
+        int shards = 1;
+        MemoryPolicy memoryPolicy = MemoryPolicy.mainMemoryOnly();
+        File tempDir = null;
+        boolean memoryMapped = false;
+        boolean streaming = false;
+        boolean geometryOnly = false;
+        boolean crop = false;
+        String batchSource = null;
+        int batchLoaders = 1;
+        int batchAnalyzers = 1;
+        int batchWriters = 1;
+        int batchQueue = 2;
+        File summaryFile = null;
+        File metricsFile = null;
+        File prometheusFile = null;
+        File cacheDir = null;
+        long cacheMaxBytes = DEFAULT_CACHE_MAX_BYTES;
+        File layoutIndexFile = null;
+        File planOnlyFile = null;
+        File applyPlanFile = null;
+        int servePort = -1;
+        int serverWorkers = 1;
+        int serverQueue = 4;
+        long maxUploadBytes = SegmentationServer.DEFAULT_MAX_UPLOAD_BYTES;
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    positional.add(arg);
+                    continue;
+                }
+                switch (arg) {
+                    case "--threads":
+                        threads = parseInt(optionValue(args, ++i, arg), "Number of threads");
+                        break;
+                    case "--shards":
+                        shards = parseInt(optionValue(args, ++i, arg), "Number of extraction shards");
+                        break;
+                    case "--writers":
+                        writerThreads = parseInt(optionValue(args, ++i, arg), "Number of writer threads");
+                        break;
+                    case "--memory":
+                        memoryPolicy = MemoryPolicy.parse(optionValue(args, ++i, arg));
+                        break;
+                    case "--temp-dir":
+                        tempDir = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--mmap":
+                        memoryMapped = true;
+                        break;
+                    case "--streaming":
+                        streaming = true;
+                        break;
+                    case "--geometry-only":
+                        geometryOnly = true;
+                        break;
+                    case "--crop":
+                        crop = true;
+                        break;
+                    case "--batch":
+                        batchSource = optionValue(args, ++i, arg);
+                        break;
+                    case "--batch-loaders":
+                        batchLoaders = parseInt(optionValue(args, ++i, arg), "Number of batch load threads");
+                        break;
+                    case "--batch-analyzers":
+                        batchAnalyzers = parseInt(optionValue(args, ++i, arg), "Number of batch analyze threads");
+                        break;
+                    case "--batch-writers":
+                        batchWriters = parseInt(optionValue(args, ++i, arg), "Number of batch write threads");
+                        break;
+                    case "--batch-queue":
+                        batchQueue = parseInt(optionValue(args, ++i, arg), "Batch queue capacity");
+                        break;
+                    case "--summary":
+                        summaryFile = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--metrics":
+                        metricsFile = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--prometheus":
+                        prometheusFile = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--cache-dir":
+                        cacheDir = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--cache-max-bytes":
+                        cacheMaxBytes = MemoryPolicy.parseSize(optionValue(args, ++i, arg));
+                        break;
+                    case "--layout-index":
+                        layoutIndexFile = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--plan-only":
+                        planOnlyFile = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--apply-plan":
+                        applyPlanFile = new File(optionValue(args, ++i, arg));
+                        break;
+                    case "--serve":
+                        servePort = parseInt(optionValue(args, ++i, arg), "Server port");
+                        break;
+                    case "--server-workers":
+                        serverWorkers = parseInt(optionValue(args, ++i, arg), "Number of server workers");
+                        break;
+                    case "--server-queue":
+                        serverQueue = parseInt(optionValue(args, ++i, arg), "Server queue capacity");
+                        break;
+                    case "--max-upload":
+                        maxUploadBytes = MemoryPolicy.parseSize(optionValue(args, ++i, arg));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (layoutIndexFile != null && (streaming || batchSource != null || servePort >= 0)) {
+                throw new IllegalArgumentException("--layout-index needs a single input without --streaming");
+            }
+            if (servePort >= 0 && batchSource != null) {
+                throw new IllegalArgumentException("--serve cannot be combined with --batch");
+            }
+            if ((planOnlyFile != null || applyPlanFile != null)
+                    && (batchSource != null || servePort >= 0 || layoutIndexFile != null)) {
+                throw new IllegalArgumentException("--plan-only and --apply-plan work on a single input without "
+                        + "--batch, --serve or --layout-index");
+            }
+            if (planOnlyFile != null && applyPlanFile != null) {
+                throw new IllegalArgumentException("--plan-only cannot be combined with --apply-plan");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        
+        if (servePort >= 0) {
+            try {
+                PDFSegmenter segmenter = createSegmenter(threads, shards, writerThreads, memoryPolicy, tempDir,
+                        memoryMapped, streaming, geometryOnly, crop, cacheDir, cacheMaxBytes);
+                SegmentationServer server = new SegmentationServer(segmenter);
+                server.setWorkers(serverWorkers);
+                server.setQueueCapacity(serverQueue);
+                server.setMaxUploadBytes(maxUploadBytes);
+                server.setTempDir(tempDir);
+                server.start(new InetSocketAddress(servePort));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(5)));
+                System.out.println("Listening on port " + server.getPort());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid argument: " + e.getMessage());
+                System.exit(1);
+            } catch (Exception e) {
+                System.err.println("Error starting server: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        
+        if (batchSource != null) {
+            if (positional.size() != 2) {
+                printUsage();
+                System.exit(1);
+            }
+            try {
+                int numCuts = parseInt(positional.get(0), "Number of cuts");
+                File outputRoot = new File(positional.get(1));
+                PDFSegmenter segmenter = createSegmenter(threads, shards, writerThreads, memoryPolicy, tempDir,
+                        memoryMapped, streaming, geometryOnly, crop, cacheDir, cacheMaxBytes);
+                BatchSegmenter batch = new BatchSegmenter(segmenter);
+                batch.setLoadThreads(batchLoaders);
+                batch.setAnalyzeThreads(batchAnalyzers);
+                batch.setWriteThreads(batchWriters);
+                batch.setQueueCapacity(batchQueue);
+                int failed = runBatch(batch, batchSource, numCuts, outputRoot,
+                        summaryFile != null ? summaryFile : new File(outputRoot, "batch_summary.tsv"),
+                        metricsFile, prometheusFile);
+                System.exit(failed == 0 ? 0 : 2);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid argument: " + e.getMessage());
+                System.exit(1);
+            } catch (Exception e) {
+                System.err.println("Error running batch: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        
+        if (applyPlanFile != null) {
+            if (positional.size() > 1) {
+                printUsage();
+                System.exit(1);
+            }
+            try {
+                SegmentationPlan plan = SegmentationPlan.read(applyPlanFile);
+                File outputDir = new File(positional.isEmpty()
+                        ? getDefaultOutputDir(plan.getSourceFile().getPath()) : positional.get(0));
+                
+                System.out.println("Plan: " + applyPlanFile.getAbsolutePath());
+                System.out.println("Input PDF: " + plan.getSourceFile());
+                System.out.println("Output directory: " + outputDir.getAbsolutePath());
+                System.out.println();
+                
+                PDFSegmenter segmenter = createSegmenter(threads, shards, writerThreads, memoryPolicy, tempDir,
+                        memoryMapped, streaming, geometryOnly, crop, cacheDir, cacheMaxBytes);
+                SegmentationMetrics metrics = new SegmentationMetrics();
+                List<File> segments = segmenter.apply(plan, outputDir, metrics);
+                
+                System.out.println("Successfully created " + segments.size() + " segments:");
+                for (File segment : segments) {
+                    System.out.println("  - " + segment.getName());
+                }
+                writeMetrics(metrics, metricsFile, prometheusFile);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid argument: " + e.getMessage());
+                System.exit(1);
+            } catch (Exception e) {
+                System.err.println("Error applying plan: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        
+        if (positional.size() < 2) {
             printUsage();
             System.exit(1);
         }
         
-        String inputPath = args[0];
+        String inputPath = positional.get(0);
         int numCuts;
         
         try {
-            numCuts = Integer.parseInt(args[1]);
+            numCuts = Integer.parseInt(positional.get(1));
         } catch (NumberFormatException e) {
             System.err.println("Error: Number of cuts must be a valid integer");
             System.exit(1);
             return;
         }
         
-        String outputPath = args.length > 2 ? args[2] : getDefaultOutputDir(inputPath);
+        if (planOnlyFile != null) {
+            if (positional.size() > 2) {
+                printUsage();
+                System.exit(1);
+            }
+            try {
+                File inputFile = new File(inputPath);
+                System.out.println("Input PDF: " + inputFile.getAbsolutePath());
+                System.out.println("Number of cuts: " + numCuts);
+                System.out.println();
+                
+                PDFSegmenter segmenter = createSegmenter(threads, shards, writerThreads, memoryPolicy, tempDir,
+                        memoryMapped, streaming, geometryOnly, crop, cacheDir, cacheMaxBytes);
+                SegmentationMetrics metrics = new SegmentationMetrics();
+                SegmentationPlan plan = segmenter.plan(inputFile, numCuts, metrics);
+                plan.write(planOnlyFile);
+                
+                System.out.println("Planned " + plan.getSegments().size() + " segments:");
+                for (int i = 0; i < plan.getSegments().size(); i++) {
+                    Segment segment = plan.getSegments().get(i);
+                    System.out.println("  - segment " + (i + 1) + ": pages " + (segment.getStartPage() + 1) + "-"
+                            + (segment.getEndPage() + 1));
+                }
+                System.out.println("Plan written to " + planOnlyFile.getAbsolutePath());
+                writeMetrics(metrics, metricsFile, prometheusFile);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid argument: " + e.getMessage());
+                System.exit(1);
+            } catch (Exception e) {
+                System.err.println("Error processing PDF: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        
+        String outputPath = positional.size() > 2 ? positional.get(2) : getDefaultOutputDir(inputPath);
         
         try {
             File inputFile = new File(inputPath);
@@ -35,14 +319,22 @@ public class App {
             System.out.println("Output directory: " + outputDir.getAbsolutePath());
             System.out.println();
             
-            PDFSegmenter segmenter = new PDFSegmenter();
-            List<File> segments = segmenter.segment(inputFile, numCuts, outputDir);
+            PDFSegmenter segmenter = createSegmenter(threads, shards, writerThreads, memoryPolicy, tempDir,
+                        memoryMapped, streaming, geometryOnly, crop, cacheDir, cacheMaxBytes);
+            SegmentationReport report = segmenter.segmentWithReport(inputFile, numCuts, outputDir);
+            List<File> segments = report.getSegments();
             
             System.out.println("Successfully created " + segments.size() + " segments:");
             for (File segment : segments) {
                 System.out.println("  - " + segment.getName());
             }
             
+            writeMetrics(report.getMetrics(), metricsFile, prometheusFile);
+            if (layoutIndexFile != null) {
+                LayoutIndexWriter.write(report.getAnalysis(), layoutIndexFile);
+                System.out.println("Layout index written to " + layoutIndexFile.getAbsolutePath());
+            }
+            
         } catch (IllegalArgumentException e) {
             System.err.println("Invalid argument: " + e.getMessage());
             System.exit(1);
@@ -53,18 +345,143 @@ public class App {
         }
     }
     
+    private static PDFSegmenter createSegmenter(int threads, int shards, int writerThreads, MemoryPolicy memoryPolicy,
+                                                File tempDir, boolean memoryMapped, boolean streaming,
+                                                boolean geometryOnly, boolean crop, File cacheDir,
+                                                long cacheMaxBytes) throws IOException {
+        DocumentLoader loader = new DocumentLoader(
+                tempDir != null ? memoryPolicy.withTempDir(tempDir) : memoryPolicy, memoryMapped);
+        PDFAnalyzer analyzer = new PDFAnalyzer(threads, loader);
+        analyzer.setExtractionShards(shards);
+        if (geometryOnly) {
+            analyzer.setBlockContent(PDFAnalyzer.BlockContent.NONE);
+        }
+        if (cacheDir != null) {
+            analyzer.setAnalysisCache(new AnalysisCache(cacheDir, cacheMaxBytes));
+        }
+        PDFSegmenter segmenter = new PDFSegmenter(analyzer, loader);
+        segmenter.setWriterThreads(writerThreads);
+        segmenter.setStreamingAnalysis(streaming);
+        segmenter.setCropToCuts(crop);
+        return segmenter;
+    }
+    
+    private static int runBatch(BatchSegmenter batch, String source, int numCuts, File outputRoot,
+                                File summaryFile, File metricsFile, File prometheusFile)
+            throws IOException, InterruptedException {
+        List<File> inputs = BatchInputs.resolve(source, new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        
+        System.out.println("Batch input: " + source + " (" + inputs.size() + " files)");
+        System.out.println("Number of cuts: " + numCuts);
+        System.out.println("Output directory: " + outputRoot.getAbsolutePath());
+        System.out.println();
+        
+        batch.setListener(result -> {
+            if (result.isSuccess()) {
+                System.out.println("  OK     " + result.getInputFile() + " (" + result.getSegments().size() + " segments)");
+            } else {
+                System.out.println("  FAILED " + result.getInputFile() + " [" + result.getStage() + "] "
+                        + result.getError().getMessage());
+            }
+        });
+        List<BatchResult> results = batch.run(inputs, numCuts, outputRoot);
+        BatchSegmenter.writeSummary(results, summaryFile);
+        if (metricsFile != null) {
+            BatchSegmenter.writeMetricsJson(results, metricsFile);
+        }
+        if (prometheusFile != null) {
+            writeText(prometheusFile, BatchSegmenter.totals(results).toPrometheus());
+        }
+        
+        long failed = results.stream().filter(result -> !result.isSuccess()).count();
+        System.out.println();
+        System.out.println("Processed " + results.size() + " files, " + failed + " failed");
+        System.out.println("Summary written to " + summaryFile.getAbsolutePath());
+        return (int) failed;
+    }
+    
+    private static void writeMetrics(SegmentationMetrics metrics, File metricsFile, File prometheusFile)
+            throws IOException {
+        if (metricsFile != null) {
+            writeText(metricsFile, metrics.toJson() + System.lineSeparator());
+        }
+        if (prometheusFile != null) {
+            writeText(prometheusFile, metrics.toPrometheus());
+        }
+    }
+    
+    private static void writeText(File file, String text) throws IOException {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String optionValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for option " + option);
+        }
+        return args[index];
+    }
+    
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a valid integer: " + value);
+        }
+    }
+    
     private static void printUsage() {
         System.out.println("PDF Content Segmenter");
         System.out.println();
-        System.out.println("Usage: java -jar pdf-segmenter.jar <input.pdf> <num_cuts> [output_dir]");
+        System.out.println("Usage: java -jar pdf-segmenter.jar [options] <input.pdf> <num_cuts> [output_dir]");
+        System.out.println("       java -jar pdf-segmenter.jar [options] --batch <dir|glob|-> <num_cuts> <output_dir>");
+        System.out.println("       java -jar pdf-segmenter.jar [options] --serve <port>");
+        System.out.println("       java -jar pdf-segmenter.jar [options] --plan-only <plan_file> <input.pdf> <num_cuts>");
+        System.out.println("       java -jar pdf-segmenter.jar [options] --apply-plan <plan_file> [output_dir]");
         System.out.println();
         System.out.println("Arguments:");
         System.out.println("  input.pdf   - Path to the PDF file to segment");
         System.out.println("  num_cuts    - Number of cuts to make (creates num_cuts + 1 segments)");
         System.out.println("  output_dir  - (Optional) Output directory for segments");
         System.out.println();
+        System.out.println("Options:");
+        System.out.println("  --threads N       - Number of threads used to analyze pages (default 1)");
+        System.out.println("  --shards N        - Extract page ranges on N threads, each with its own handle on the input (default 1)");
+        System.out.println("  --writers N       - Number of threads used to write segment files (default 1)");
+        System.out.println("  --memory POLICY   - Memory for PDF buffers: main, temp or mixed:<size> (default main)");
+        System.out.println("  --temp-dir DIR    - Directory for scratch files used by the temp and mixed policies");
+        System.out.println("  --mmap            - Parse input files from a read-only memory mapping shared by all handles");
+        System.out.println("  --streaming       - Pick cuts in one pass without keeping all blocks and gaps in memory");
+        System.out.println("  --geometry-only   - Keep only block positions, without assembling block text");
+        System.out.println("  --crop            - Split pages that hold a cut by CropBox, so no content appears in two segments");
+        System.out.println("  --metrics FILE    - Write stage timings and counts as JSON (one line per file in batch mode)");
+        System.out.println("  --prometheus FILE - Write stage timings and counts in Prometheus text format (batch totals)");
+        System.out.println("  --cache-dir DIR   - Reuse text blocks and gaps from earlier runs on the same file");
+        System.out.println("  --cache-max-bytes SIZE");
+        System.out.println("                    - Evict least recently used cache entries above SIZE, e.g. 512m (default 1g)");
+        System.out.println("  --layout-index FILE");
+        System.out.println("                    - Write block geometry and ranked gaps to a binary sidecar file");
+        System.out.println("  --plan-only FILE  - Analyze only and write the cut points and segment ranges to FILE");
+        System.out.println("  --apply-plan FILE - Write the segments of a plan made by --plan-only, without analyzing again");
+        System.out.println();
+        System.out.println("Batch options:");
+        System.out.println("  --batch SOURCE        - Segment every PDF in a directory, matching a glob, or listed on stdin (-)");
+        System.out.println("  --batch-loaders N     - Number of threads loading documents (default 1)");
+        System.out.println("  --batch-analyzers N   - Number of threads analyzing documents (default 1)");
+        System.out.println("  --batch-writers N     - Number of threads writing segments (default 1)");
+        System.out.println("  --batch-queue N       - Documents allowed to wait between stages (default 2)");
+        System.out.println("  --summary FILE        - Per-file results (default <output_dir>/batch_summary.tsv)");
+        System.out.println();
+        System.out.println("Server options:");
+        System.out.println("  --serve PORT          - Serve POST /segment?numCuts=N[&format=json|zip] with the PDF as body");
+        System.out.println("  --server-workers N    - Documents processed at the same time (default 1)");
+        System.out.println("  --server-queue N      - Requests allowed to wait before answering 503 (default 4)");
+        System.out.println("  --max-upload SIZE     - Largest accepted upload, e.g. 16m (default 64m)");
+        System.out.println();
         System.out.println("Example:");
         System.out.println("  java -jar pdf-segmenter.jar document.pdf 3 ./output");
+        System.out.println("  java -jar pdf-segmenter.jar --batch ./incoming --batch-analyzers 4 3 ./output");
+        System.out.println("  java -jar pdf-segmenter.jar --plan-only document.plan document.pdf 3");
+        System.out.println("  java -jar pdf-segmenter.jar --apply-plan document.plan ./output");
     }
     
     private static String getDefaultOutputDir(String inputPath) {
@@ -74,4 +491,3 @@ public class App {
         return new File(parent != null ? parent : new File("."), baseName + "_segments").getAbsolutePath();
     }
 }
-
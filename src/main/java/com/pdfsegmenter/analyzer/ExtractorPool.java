@@ -0,0 +1,37 @@
+package com.pdfsegmenter.analyzer;
+
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Extractors shared by every thread using one PDFAnalyzer. An extractor is used by one thread between acquire
+// and release; the pool never holds more than the most that were in use at once.
+class ExtractorPool {
+    private final Queue<TextPositionExtractor> extractors = new ConcurrentLinkedQueue<>();
+    private final GlyphBufferPool bufferPool;
+
+    ExtractorPool(GlyphBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    TextPositionExtractor acquire(String documentPath, SegmentationMetrics metrics,
+                                  TextPositionExtractor.PageHandler pageHandler) throws IOException {
+        TextPositionExtractor extractor = extractors.poll();
+        if (extractor == null) {
+            extractor = new TextPositionExtractor(bufferPool, metrics, pageHandler);
+        }
+        extractor.bind(documentPath, metrics, pageHandler);
+        return extractor;
+    }
+
+    void release(TextPositionExtractor extractor) {
+        extractor.reset();
+        extractors.offer(extractor);
+    }
+
+    int idleCount() {
+        return extractors.size();
+    }
+}
@@ -0,0 +1,78 @@
+package com.pdfsegmenter.analyzer;
+
+import java.util.Arrays;
+
+class GlyphBuffer {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private float[] x = new float[INITIAL_CAPACITY];
+    private float[] y = new float[INITIAL_CAPACITY];
+    private float[] width = new float[INITIAL_CAPACITY];
+    private float[] height = new float[INITIAL_CAPACITY];
+    private int[] textEnd = new int[INITIAL_CAPACITY];
+    private char[] text = new char[INITIAL_CAPACITY];
+    private int size;
+    private int textSize;
+
+    void add(float glyphX, float glyphY, float glyphWidth, float glyphHeight, String unicode) {
+        if (size == x.length) {
+            int capacity = size * 2;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            width = Arrays.copyOf(width, capacity);
+            height = Arrays.copyOf(height, capacity);
+            textEnd = Arrays.copyOf(textEnd, capacity);
+        }
+        int length = unicode.length();
+        if (textSize + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + length));
+        }
+        unicode.getChars(0, length, text, textSize);
+        textSize += length;
+
+        x[size] = glyphX;
+        y[size] = glyphY;
+        width[size] = glyphWidth;
+        height[size] = glyphHeight;
+        textEnd[size] = textSize;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int capacity() {
+        return x.length;
+    }
+
+    float getX(int index) {
+        return x[index];
+    }
+
+    float getY(int index) {
+        return y[index];
+    }
+
+    float getWidth(int index) {
+        return width[index];
+    }
+
+    float getHeight(int index) {
+        return height[index];
+    }
+
+    void appendText(int index, StringBuilder sb) {
+        int start = index == 0 ? 0 : textEnd[index - 1];
+        sb.append(text, start, textEnd[index] - start);
+    }
+
+    void clear() {
+        size = 0;
+        textSize = 0;
+    }
+}
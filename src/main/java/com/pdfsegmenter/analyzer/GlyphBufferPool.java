@@ -0,0 +1,27 @@
+package com.pdfsegmenter.analyzer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class GlyphBufferPool {
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private final Queue<GlyphBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    GlyphBuffer acquire() {
+        GlyphBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : new GlyphBuffer();
+    }
+
+    void release(GlyphBuffer buffer) {
+        // Buffers that grew for an unusually dense page are left to the GC instead of pinning their arrays.
+        if (buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    int idleCount() {
+        return buffers.size();
+    }
+}
@@ -0,0 +1,96 @@
+package com.pdfsegmenter.analyzer;
+
+import com.pdfsegmenter.util.SortKeys;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+class LineIndex {
+    private final float threshold;
+    private final TreeMap<Float, Line> lines = new TreeMap<>();
+
+    LineIndex(float threshold) {
+        this.threshold = threshold;
+    }
+
+    void add(float y, int glyph) {
+        Float matchingLine = findMatchingLine(y);
+
+        if (matchingLine != null) {
+            lines.get(matchingLine).add(glyph);
+        } else {
+            Line newLine = new Line();
+            newLine.add(glyph);
+            lines.put(y, newLine);
+        }
+    }
+
+    Float findMatchingLine(float y) {
+        // A line is only created when no existing line is within the threshold, so line keys
+        // are at least one threshold apart and this window holds a handful of keys at most.
+        // Scanning it in ascending order keeps the "lowest matching line wins" rule.
+        for (Map.Entry<Float, Line> entry : lines.tailMap(y - 2 * threshold, true).entrySet()) {
+            float line = entry.getKey();
+            if (Math.abs(line - y) < threshold) {
+                return entry.getKey();
+            }
+            if (line - y >= threshold) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    NavigableMap<Float, Line> getLines() {
+        return lines;
+    }
+
+    static class Line {
+        private int[] glyphs = new int[16];
+        private int size;
+
+        void add(int glyph) {
+            if (size == glyphs.length) {
+                glyphs = Arrays.copyOf(glyphs, size * 2);
+            }
+            glyphs[size++] = glyph;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return glyphs[index];
+        }
+
+        // Stable, O(n log n) whatever order the glyphs arrived in; lines already in reading order, the common case,
+        // are only scanned.
+        void sortByX(GlyphBuffer buffer) {
+            if (isSortedByX(buffer)) {
+                return;
+            }
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = SortKeys.ascending(buffer.getX(glyphs[i]), i);
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[glyphs.length];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = glyphs[SortKeys.index(keys[i])];
+            }
+            glyphs = sorted;
+        }
+
+        private boolean isSortedByX(GlyphBuffer buffer) {
+            for (int i = 1; i < size; i++) {
+                if (Float.compare(buffer.getX(glyphs[i - 1]), buffer.getX(glyphs[i])) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,108 +1,368 @@
 package com.pdfsegmenter.analyzer;
 
+import com.pdfsegmenter.cache.AnalysisCache;
+import com.pdfsegmenter.cache.CachedAnalysis;
+import com.pdfsegmenter.io.DocumentLoader;
+import com.pdfsegmenter.metrics.SegmentationEvents;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Counter;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Stage;
 import com.pdfsegmenter.model.CutPoint;
+import com.pdfsegmenter.model.GapColumns;
 import com.pdfsegmenter.model.TextBlock;
+import com.pdfsegmenter.model.TextBlockColumns;
 import com.pdfsegmenter.model.WhitespaceGap;
+import com.pdfsegmenter.util.NamedThreadFactory;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.text.TextPosition;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
+// One analyzer can be shared by any number of threads. Each call reads the cache, shard and content settings once,
+// so changing them while other threads are analyzing affects only the calls that start afterwards. Extractors
+// and glyph buffers come from pools owned by the analyzer and are reset before they are handed to the next call.
 public class PDFAnalyzer {
+    // How TextBlock content is produced. Segmentation only needs block geometry.
+    //   TEXT  built while grouping (the default)
+    //   LAZY  built on the first getContent() call; the page's glyphs stay reachable until then
+    //   NONE  never built; getContent() returns ""
+    public enum BlockContent { TEXT, LAZY, NONE }
+
     private static final float LINE_GROUPING_THRESHOLD = 3.0f;
+    private static final float BLOCK_GAP_FACTOR = 1.8f;
+    private static final int PAGES_IN_FLIGHT_PER_THREAD = 2;
+    // Page ranges per shard; more, smaller ranges keep workers busy when some pages are much heavier than others.
+    private static final int RANGES_PER_SHARD = 4;
+    // Part of every cache key; anything that changes the blocks or gaps for the same file belongs here.
+    private static final String CACHE_PARAMETERS =
+            "lineThreshold=" + LINE_GROUPING_THRESHOLD + ";blockGapFactor=" + BLOCK_GAP_FACTOR + ";pageBox=crop";
+
+    private final int threads;
+    private final DocumentLoader loader;
+    private final GlyphBufferPool bufferPool = new GlyphBufferPool();
+    private final ExtractorPool extractorPool = new ExtractorPool(bufferPool);
+    private volatile AnalysisCache analysisCache;
+    private volatile int extractionShards = 1;
+    private volatile BlockContent blockContent = BlockContent.TEXT;
+
+    public PDFAnalyzer() {
+        this(1);
+    }
+
+    public PDFAnalyzer(int threads) {
+        this(threads, new DocumentLoader());
+    }
+
+    public PDFAnalyzer(int threads, DocumentLoader loader) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of analysis threads must be at least 1");
+        }
+        this.threads = threads;
+        this.loader = loader;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    // Used by analyze(File, ...) only; streaming analysis keeps no blocks or gaps to store and bypasses it.
+    public void setAnalysisCache(AnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+
+    public int getExtractionShards() {
+        return extractionShards;
+    }
+
+    // Above 1, analyze(File, ...) extracts page ranges on this many workers, each on its own read-only handle
+    // of the file, and groups pages on the worker that extracted them instead of on the threads pool.
+    public void setExtractionShards(int extractionShards) {
+        if (extractionShards < 1) {
+            throw new IllegalArgumentException("Number of extraction shards must be at least 1");
+        }
+        this.extractionShards = extractionShards;
+    }
+
+    public BlockContent getBlockContent() {
+        return blockContent;
+    }
+
+    public void setBlockContent(BlockContent blockContent) {
+        this.blockContent = blockContent;
+    }
+
+    // Idle pooled extractors; for tests.
+    int idleExtractors() {
+        return extractorPool.idleCount();
+    }
+
+    // Idle pooled glyph buffers; for tests.
+    int idleBuffers() {
+        return bufferPool.idleCount();
+    }
 
     public List<TextBlock> extractTextBlocks(PDDocument document) throws IOException {
-        List<TextBlock> allBlocks = new ArrayList<>();
+        return extractTextBlocks(settings(), null, document, new SegmentationMetrics());
+    }
+
+    private List<TextBlock> extractTextBlocks(Settings settings, File pdfFile, PDDocument document,
+                                              SegmentationMetrics metrics) throws IOException {
+        String documentPath = SegmentationEvents.path(pdfFile);
+        BlockContent content = settings.blockContent;
+        int pages = document.getNumberOfPages();
+        if (pdfFile == null || settings.extractionShards == 1 || pages < 2) {
+            TextBlockColumns allBlocks = new TextBlockColumns();
+            extractPageBlocks(documentPath, document, content, (pageNum, pageBlocks) -> allBlocks.addAll(pageBlocks),
+                    metrics);
+            return allBlocks;
+        }
+        
+        int ranges = Math.min(pages, settings.extractionShards * RANGES_PER_SHARD);
+        int workers = Math.min(settings.extractionShards, ranges);
+        List<List<TextBlock>> rangeBlocks = new ArrayList<>(Collections.nCopies(ranges, null));
+        AtomicInteger nextRange = new AtomicInteger();
         
-        for (int pageNum = 0; pageNum < document.getNumberOfPages(); pageNum++) {
-            List<TextBlock> pageBlocks = extractPageTextBlocks(document, pageNum);
-            allBlocks.addAll(pageBlocks);
+        // The calling thread is the first worker and extracts from document; the others load pdfFile again,
+        // since PDFBox parses objects lazily and would race on a shared document.
+        ExecutorService executor = Executors.newFixedThreadPool(workers - 1, new NamedThreadFactory("pdf-analyzer"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 1; w < workers; w++) {
+                futures.add(executor.submit(() -> {
+                    try (PDDocument handle = load(pdfFile, metrics)) {
+                        extractRanges(documentPath, handle, content, pages, rangeBlocks, nextRange, metrics);
+                    }
+                    return null;
+                }));
+            }
+            
+            extractRanges(documentPath, document, content, pages, rangeBlocks, nextRange, metrics);
+            
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting " + pdfFile);
+        } catch (ExecutionException e) {
+            throw unwrap(e, "Failed to extract " + pdfFile);
+        } finally {
+            // Stops the other workers after their current range when one of them fails.
+            nextRange.set(ranges);
+            executor.shutdownNow();
         }
         
+        TextBlockColumns allBlocks = new TextBlockColumns();
+        rangeBlocks.forEach(allBlocks::addAll);
         return allBlocks;
     }
 
-    private List<TextBlock> extractPageTextBlocks(PDDocument document, int pageNum) throws IOException {
-        TextPositionExtractor extractor = new TextPositionExtractor();
-        extractor.setStartPage(pageNum + 1);
-        extractor.setEndPage(pageNum + 1);
-        extractor.getText(document);
-        
-        List<TextPosition> positions = extractor.getPositions();
-        if (positions.isEmpty()) {
-            return Collections.emptyList();
+    private void extractRanges(String documentPath, PDDocument handle, BlockContent content, int pages,
+                               List<List<TextBlock>> rangeBlocks, AtomicInteger nextRange,
+                               SegmentationMetrics metrics) throws IOException {
+        int ranges = rangeBlocks.size();
+        // Each worker is handed ranges in increasing order, so one forward walk of its handle's page tree finds
+        // the pages of all of them.
+        Iterator<PDPage> pageTree = handle.getPages().iterator();
+        int nextPage = 0;
+        int range;
+        while ((range = nextRange.getAndIncrement()) < ranges) {
+            int firstPage = range * pages / ranges;
+            int endPage = (range + 1) * pages / ranges;
+            for (; nextPage < firstPage; nextPage++) {
+                pageTree.next();
+            }
+            List<PDPage> rangePages = new ArrayList<>(endPage - firstPage);
+            for (; nextPage < endPage; nextPage++) {
+                rangePages.add(pageTree.next());
+            }
+            
+            List<TextBlock> blocks = new ArrayList<>();
+            TextPositionExtractor extractor = extractorPool.acquire(documentPath, metrics,
+                    (pageNum, glyphs) -> blocks.addAll(groupAndRelease(documentPath, glyphs, pageNum, content, metrics)));
+            try {
+                extractor.extract(handle, firstPage, rangePages);
+            } finally {
+                extractorPool.release(extractor);
+            }
+            rangeBlocks.set(range, blocks);
         }
-        
-        return groupPositionsIntoBlocks(positions, pageNum);
     }
 
-    private List<TextBlock> groupPositionsIntoBlocks(List<TextPosition> positions, int pageNum) {
-        Map<Float, List<TextPosition>> lineGroups = new TreeMap<>();
+    private void extractPageBlocks(String documentPath, PDDocument document, BlockContent content,
+                                   PageBlocksConsumer consumer, SegmentationMetrics metrics) throws IOException {
+        if (threads == 1) {
+            TextPositionExtractor extractor = extractorPool.acquire(documentPath, metrics, (pageNum, glyphs) ->
+                    consumer.accept(pageNum, groupAndRelease(documentPath, glyphs, pageNum, content, metrics)));
+            try {
+                extractor.extract(document);
+            } finally {
+                extractorPool.release(extractor);
+            }
+            return;
+        }
         
-        for (TextPosition pos : positions) {
-            float y = pos.getY();
-            Float matchingLine = findMatchingLine(lineGroups.keySet(), y);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("pdf-analyzer"));
+        try {
+            Deque<PendingPage> pending = new ArrayDeque<>();
+            int maxInFlight = threads * PAGES_IN_FLIGHT_PER_THREAD;
             
-            if (matchingLine != null) {
-                lineGroups.get(matchingLine).add(pos);
-            } else {
-                List<TextPosition> newLine = new ArrayList<>();
-                newLine.add(pos);
-                lineGroups.put(y, newLine);
+            TextPositionExtractor extractor = extractorPool.acquire(documentPath, metrics, (pageNum, glyphs) -> {
+                pending.addLast(new PendingPage(pageNum,
+                        executor.submit(() -> groupAndRelease(documentPath, glyphs, pageNum, content, metrics))));
+                
+                while (pending.size() >= maxInFlight || (!pending.isEmpty() && pending.peekFirst().future.isDone())) {
+                    completeNext(pending, consumer);
+                }
+            });
+            try {
+                extractor.extract(document);
+            } finally {
+                extractorPool.release(extractor);
             }
+            
+            while (!pending.isEmpty()) {
+                completeNext(pending, consumer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void completeNext(Deque<PendingPage> pending, PageBlocksConsumer consumer) throws IOException {
+        PendingPage page = pending.removeFirst();
+        try {
+            consumer.accept(page.pageNum, page.future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while analyzing page " + (page.pageNum + 1));
+        } catch (ExecutionException e) {
+            throw unwrap(e, "Failed to analyze page " + (page.pageNum + 1));
         }
-        
-        List<Float> sortedYPositions = new ArrayList<>(lineGroups.keySet());
-        Collections.sort(sortedYPositions);
-        
-        return mergeIntoTextBlocks(sortedYPositions, lineGroups, pageNum);
     }
 
-    private Float findMatchingLine(Set<Float> existingLines, float y) {
-        for (Float line : existingLines) {
-            if (Math.abs(line - y) < LINE_GROUPING_THRESHOLD) {
-                return line;
+    // Rethrows an unchecked cause as is; anything else is returned wrapped for the caller to throw.
+    private static IOException unwrap(ExecutionException e, String message) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(message, cause);
+    }
+
+    private List<TextBlock> groupAndRelease(String documentPath, GlyphBuffer glyphs, int pageNum, BlockContent content,
+                                            SegmentationMetrics metrics) {
+        SegmentationEvents.LineGrouping event = new SegmentationEvents.LineGrouping();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            List<TextBlock> blocks = groupGlyphsIntoBlocks(glyphs, pageNum, content);
+            if (event.shouldCommit()) {
+                event.documentPath = documentPath;
+                event.pageIndex = pageNum;
+                event.glyphCount = glyphs.size();
+                event.blockCount = blocks.size();
+                event.commit();
+            }
+            return blocks;
+        } finally {
+            // Lazy blocks read their text from the buffer later, so it cannot go back to the pool.
+            if (content != BlockContent.LAZY) {
+                bufferPool.release(glyphs);
             }
+            metrics.recordSince(Stage.GROUP, start);
         }
-        return null;
     }
 
-    private List<TextBlock> mergeIntoTextBlocks(List<Float> sortedY, Map<Float, List<TextPosition>> lineGroups, int pageNum) {
+    List<TextBlock> groupGlyphsIntoBlocks(GlyphBuffer glyphs, int pageNum) {
+        return groupGlyphsIntoBlocks(glyphs, pageNum, blockContent);
+    }
+
+    private List<TextBlock> groupGlyphsIntoBlocks(GlyphBuffer glyphs, int pageNum, BlockContent content) {
+        LineIndex lineIndex = new LineIndex(LINE_GROUPING_THRESHOLD);
+        
+        for (int i = 0; i < glyphs.size(); i++) {
+            lineIndex.add(glyphs.getY(i), i);
+        }
+        
+        Map<Float, LineIndex.Line> lineGroups = lineIndex.getLines();
+        List<Float> sortedYPositions = new ArrayList<>(lineGroups.keySet());
+        
+        return mergeIntoTextBlocks(sortedYPositions, lineGroups, glyphs, pageNum, content);
+    }
+
+    private List<TextBlock> mergeIntoTextBlocks(List<Float> sortedY, Map<Float, LineIndex.Line> lineGroups,
+                                                GlyphBuffer glyphs, int pageNum, BlockContent content) {
         if (sortedY.isEmpty()) {
             return Collections.emptyList();
         }
         
         List<TextBlock> blocks = new ArrayList<>();
         float avgLineSpacing = calculateAverageLineSpacing(sortedY);
-        float significantGapThreshold = avgLineSpacing * 1.8f;
+        float significantGapThreshold = avgLineSpacing * BLOCK_GAP_FACTOR;
         
         float blockStartY = sortedY.get(0);
         float blockEndY = sortedY.get(0);
-        StringBuilder blockContent = new StringBuilder();
-        blockContent.append(getLineText(lineGroups.get(sortedY.get(0))));
+        List<LineIndex.Line> blockLines = new ArrayList<>();
+        blockLines.add(lineGroups.get(sortedY.get(0)));
         
         for (int i = 1; i < sortedY.size(); i++) {
             float currentY = sortedY.get(i);
             float gap = currentY - blockEndY;
             
             if (gap > significantGapThreshold) {
-                blocks.add(new TextBlock(blockStartY, blockEndY, pageNum, blockContent.toString().trim()));
+                blocks.add(createBlock(blockStartY, blockEndY, pageNum, blockLines, glyphs, content));
                 blockStartY = currentY;
-                blockContent = new StringBuilder();
+                blockLines = new ArrayList<>();
             }
             
             blockEndY = currentY;
-            blockContent.append(" ").append(getLineText(lineGroups.get(currentY)));
+            blockLines.add(lineGroups.get(currentY));
         }
         
-        blocks.add(new TextBlock(blockStartY, blockEndY, pageNum, blockContent.toString().trim()));
+        blocks.add(createBlock(blockStartY, blockEndY, pageNum, blockLines, glyphs, content));
         return blocks;
     }
 
+    private TextBlock createBlock(float startY, float endY, int pageNum, List<LineIndex.Line> lines,
+                                  GlyphBuffer glyphs, BlockContent content) {
+        switch (content) {
+            case NONE:
+                return new TextBlock(startY, endY, pageNum, "");
+            case LAZY:
+                return new TextBlock(startY, endY, pageNum, new LazyBlockText(lines, glyphs));
+            default:
+                return new TextBlock(startY, endY, pageNum, blockText(lines, glyphs));
+        }
+    }
+
+    private static String blockText(List<LineIndex.Line> lines, GlyphBuffer glyphs) {
+        StringBuilder text = new StringBuilder();
+        for (LineIndex.Line line : lines) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            appendLineText(text, line, glyphs);
+        }
+        return text.toString().trim();
+    }
+
     private float calculateAverageLineSpacing(List<Float> sortedY) {
         if (sortedY.size() < 2) return 15.0f;
         
@@ -120,57 +380,90 @@ public class PDFAnalyzer {
         return count > 0 ? totalSpacing / count : 15.0f;
     }
 
-    private String getLineText(List<TextPosition> positions) {
-        if (positions == null || positions.isEmpty()) return "";
+    private static void appendLineText(StringBuilder sb, LineIndex.Line line, GlyphBuffer glyphs) {
+        if (line == null || line.size() == 0) return;
         
-        positions.sort(Comparator.comparing(TextPosition::getX));
-        StringBuilder sb = new StringBuilder();
-        for (TextPosition pos : positions) {
-            sb.append(pos.getUnicode());
+        line.sortByX(glyphs);
+        for (int i = 0; i < line.size(); i++) {
+            glyphs.appendText(line.get(i), sb);
         }
-        return sb.toString();
     }
 
     public List<WhitespaceGap> findWhitespaceGaps(List<TextBlock> blocks, PDDocument document) {
-        List<WhitespaceGap> gaps = new ArrayList<>();
+        TextBlockColumns columns = TextBlockColumns.of(blocks);
+        GapColumns gaps = new GapColumns();
         
-        for (int i = 0; i < blocks.size() - 1; i++) {
-            TextBlock current = blocks.get(i);
-            TextBlock next = blocks.get(i + 1);
-            
-            float gapSize;
-            if (current.getPageNumber() == next.getPageNumber()) {
-                gapSize = next.getStartY() - current.getEndY();
-            } else {
-                PDPage currentPage = document.getPage(current.getPageNumber());
-                float pageHeight = currentPage.getMediaBox().getHeight();
-                float remainingOnCurrentPage = pageHeight - current.getEndY();
-                float startOnNextPage = next.getStartY();
-                gapSize = remainingOnCurrentPage + startOnNextPage;
-            }
+        for (int i = 0; i < columns.size() - 1; i++) {
+            float endY = columns.getEndY(i);
+            int pageNumber = columns.getPageNumber(i);
+            float gapSize = gapBetween(pageNumber, endY, columns.getPageNumber(i + 1), columns.getStartY(i + 1), document);
             
             if (gapSize > 0) {
-                gaps.add(new WhitespaceGap(gapSize, current.getEndY(), current.getPageNumber(), i));
+                gaps.add(gapSize, endY, pageNumber, i);
             }
         }
         
         return gaps;
     }
 
+    private float gapBetween(int currentPage, float currentEndY, int nextPage, float nextStartY, PDDocument document) {
+        if (currentPage == nextPage) {
+            return nextStartY - currentEndY;
+        }
+        
+        // Text positions are relative to the CropBox, which is also the box segments are cropped in.
+        PDPage page = document.getPage(currentPage);
+        float pageHeight = page.getCropBox().getHeight();
+        float remainingOnCurrentPage = pageHeight - currentEndY;
+        return remainingOnCurrentPage + nextStartY;
+    }
+
     public List<CutPoint> determineCutPoints(List<WhitespaceGap> gaps, int numCuts) {
         if (gaps.isEmpty() || numCuts <= 0) {
             return Collections.emptyList();
         }
         
-        List<WhitespaceGap> sortedGaps = new ArrayList<>(gaps);
-        Collections.sort(sortedGaps);
-        
-        int actualCuts = Math.min(numCuts, sortedGaps.size());
-        List<CutPoint> cutPoints = new ArrayList<>();
+        int actualCuts = Math.min(numCuts, gaps.size());
+        TopGapSelector selector = new TopGapSelector(actualCuts);
+        if (gaps instanceof GapColumns) {
+            GapColumns columns = (GapColumns) gaps;
+            for (int i = 0; i < columns.size(); i++) {
+                selector.offer(columns.getGapSize(i), columns.getYPosition(i), columns.getPageNumber(i),
+                        columns.getBlockIndexBefore(i));
+            }
+        } else {
+            for (WhitespaceGap gap : gaps) {
+                selector.offer(gap);
+            }
+        }
         
-        for (int i = 0; i < actualCuts; i++) {
-            WhitespaceGap gap = sortedGaps.get(i);
-            cutPoints.add(new CutPoint(gap.getPageNumber(), gap.getYPosition(), gap.getBlockIndexBefore()));
+        return toCutPoints(selector);
+    }
+
+    private List<CutPoint> selectCutPoints(String documentPath, List<WhitespaceGap> gaps, int numCuts) {
+        SegmentationEvents.CutSelection event = new SegmentationEvents.CutSelection();
+        event.begin();
+        List<CutPoint> cutPoints = determineCutPoints(gaps, numCuts);
+        commitCutSelection(event, documentPath, gaps.size(), cutPoints.size());
+        return cutPoints;
+    }
+
+    private static void commitCutSelection(SegmentationEvents.CutSelection event, String documentPath, int gapCount,
+                                           int cutCount) {
+        if (event.shouldCommit()) {
+            event.documentPath = documentPath;
+            event.gapCount = gapCount;
+            event.cutCount = cutCount;
+            event.commit();
+        }
+    }
+
+    private List<CutPoint> toCutPoints(TopGapSelector selector) {
+        List<CutPoint> cutPoints = new ArrayList<>(selector.size());
+        GapColumns ranked = selector.drainRanked();
+        for (int i = 0; i < ranked.size(); i++) {
+            cutPoints.add(new CutPoint(ranked.getPageNumber(i), ranked.getYPosition(i), ranked.getBlockIndexBefore(i),
+                    ranked.getGapSize(i)));
         }
         
         Collections.sort(cutPoints);
@@ -178,33 +471,300 @@ public class PDFAnalyzer {
     }
 
     public AnalysisResult analyze(File pdfFile, int numCuts) throws IOException {
-        try (PDDocument document = PDDocument.load(pdfFile)) {
-            List<TextBlock> blocks = extractTextBlocks(document);
-            List<WhitespaceGap> gaps = findWhitespaceGaps(blocks, document);
-            List<CutPoint> cutPoints = determineCutPoints(gaps, numCuts);
-            
-            return new AnalysisResult(blocks, gaps, cutPoints, document.getNumberOfPages());
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        Settings settings = settings();
+        String cacheKey = cacheKey(settings, pdfFile, metrics);
+        AnalysisResult cached = fromCache(settings, pdfFile, cacheKey, numCuts, metrics);
+        if (cached != null) {
+            return cached;
+        }
+        
+        try (PDDocument document = load(pdfFile, metrics)) {
+            return analyzeAndCache(settings, pdfFile, document, cacheKey, numCuts, metrics);
+        }
+    }
+
+    // document must already be open on pdfFile; it is only read on a cache miss.
+    public AnalysisResult analyze(File pdfFile, PDDocument document, int numCuts,
+                                  SegmentationMetrics metrics) throws IOException {
+        Settings settings = settings();
+        String cacheKey = cacheKey(settings, pdfFile, metrics);
+        AnalysisResult cached = fromCache(settings, pdfFile, cacheKey, numCuts, metrics);
+        if (cached != null) {
+            return cached;
+        }
+        
+        return analyzeAndCache(settings, pdfFile, document, cacheKey, numCuts, metrics);
+    }
+
+    public AnalysisResult analyze(PDDocument document, int numCuts) throws IOException {
+        return analyze(document, numCuts, new SegmentationMetrics());
+    }
+
+    public AnalysisResult analyze(PDDocument document, int numCuts, SegmentationMetrics metrics) throws IOException {
+        return analyzeDocument(settings(), null, document, numCuts, metrics);
+    }
+
+    // pdfFile, when known, lets extraction open more handles on it; see setExtractionShards.
+    private AnalysisResult analyzeDocument(Settings settings, File pdfFile, PDDocument document, int numCuts,
+                                           SegmentationMetrics metrics) throws IOException {
+        String documentPath = SegmentationEvents.path(pdfFile);
+        List<TextBlock> blocks = extractTextBlocks(settings, pdfFile, document, metrics);
+        SegmentationEvents.GapFinding gapEvent = new SegmentationEvents.GapFinding();
+        gapEvent.begin();
+        long start = System.nanoTime();
+        List<WhitespaceGap> gaps = findWhitespaceGaps(blocks, document);
+        start = metrics.recordSince(Stage.GAPS, start);
+        if (gapEvent.shouldCommit()) {
+            gapEvent.documentPath = documentPath;
+            gapEvent.blockCount = blocks.size();
+            gapEvent.gapCount = gaps.size();
+            gapEvent.commit();
+        }
+        List<CutPoint> cutPoints = selectCutPoints(documentPath, gaps, numCuts);
+        metrics.recordSince(Stage.CUTS, start);
+        
+        recordCounts(metrics, document.getNumberOfPages(), blocks.size(), gaps.size());
+        return new AnalysisResult(blocks, gaps, cutPoints, document.getNumberOfPages(), blocks.size(), metrics);
+    }
+
+    public AnalysisResult analyzeStreaming(File pdfFile, int numCuts) throws IOException {
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        try (PDDocument document = load(pdfFile, metrics)) {
+            return analyzeStreaming(pdfFile, document, numCuts, metrics);
+        }
+    }
+
+    public AnalysisResult analyzeStreaming(PDDocument document, int numCuts) throws IOException {
+        return analyzeStreaming(document, numCuts, new SegmentationMetrics());
+    }
+
+    public AnalysisResult analyzeStreaming(PDDocument document, int numCuts, SegmentationMetrics metrics) throws IOException {
+        return analyzeStreaming(null, document, numCuts, metrics);
+    }
+
+    // document must already be open on pdfFile; the file is only used to label Flight Recorder events.
+    public AnalysisResult analyzeStreaming(File pdfFile, PDDocument document, int numCuts,
+                                           SegmentationMetrics metrics) throws IOException {
+        String documentPath = SegmentationEvents.path(pdfFile);
+        StreamingGapCollector collector = new StreamingGapCollector(documentPath, document, Math.max(numCuts, 0),
+                metrics);
+        // The collector only reads block geometry and drops every block, so there is no text to build or keep,
+        // whatever the configured block content.
+        extractPageBlocks(documentPath, document, BlockContent.NONE, collector, metrics);
+        SegmentationEvents.CutSelection event = new SegmentationEvents.CutSelection();
+        event.begin();
+        long start = System.nanoTime();
+        List<CutPoint> cutPoints = toCutPoints(collector.selector);
+        metrics.recordSince(Stage.CUTS, start);
+        commitCutSelection(event, documentPath, collector.gapCount, cutPoints.size());
+        
+        recordCounts(metrics, document.getNumberOfPages(), collector.blockCount, collector.gapCount);
+        return new AnalysisResult(Collections.emptyList(), Collections.emptyList(), cutPoints,
+                document.getNumberOfPages(), collector.blockCount, metrics);
+    }
+
+    private String cacheKey(Settings settings, File pdfFile, SegmentationMetrics metrics) throws IOException {
+        if (settings.analysisCache == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        // Blocks without content must not be served to a run that wants text; TEXT and LAZY store the same blocks.
+        String key = settings.analysisCache.key(pdfFile,
+                settings.blockContent == BlockContent.NONE ? CACHE_PARAMETERS + ";content=none" : CACHE_PARAMETERS);
+        metrics.recordSince(Stage.CACHE, start);
+        return key;
+    }
+
+    private AnalysisResult fromCache(Settings settings, File pdfFile, String cacheKey, int numCuts,
+                                     SegmentationMetrics metrics) {
+        if (cacheKey == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        CachedAnalysis cached = settings.analysisCache.get(cacheKey);
+        start = metrics.recordSince(Stage.CACHE, start);
+        if (cached == null) {
+            metrics.increment(Counter.CACHE_MISSES);
+            return null;
+        }
+        
+        metrics.increment(Counter.CACHE_HITS);
+        List<TextBlock> blocks = cached.getTextBlocks();
+        List<WhitespaceGap> gaps = cached.getGaps();
+        List<CutPoint> cutPoints = selectCutPoints(SegmentationEvents.path(pdfFile), gaps, numCuts);
+        metrics.recordSince(Stage.CUTS, start);
+        
+        recordCounts(metrics, cached.getTotalPages(), blocks.size(), gaps.size());
+        return new AnalysisResult(blocks, gaps, cutPoints, cached.getTotalPages(), blocks.size(), metrics);
+    }
+
+    private AnalysisResult analyzeAndCache(Settings settings, File pdfFile, PDDocument document, String cacheKey,
+                                           int numCuts, SegmentationMetrics metrics) throws IOException {
+        // Writing the entry needs every block's text, so LAZY would build it all anyway, right after grouping,
+        // and the blocks would still pin their glyph buffers. Building it while grouping recycles them instead.
+        if (cacheKey != null && settings.blockContent == BlockContent.LAZY) {
+            settings = new Settings(settings.analysisCache, settings.extractionShards, BlockContent.TEXT);
+        }
+        AnalysisResult result = analyzeDocument(settings, pdfFile, document, numCuts, metrics);
+        if (cacheKey != null) {
+            long start = System.nanoTime();
+            try {
+                settings.analysisCache.put(cacheKey, new CachedAnalysis(result.getTextBlocks(), result.getGaps(),
+                        result.getTotalPages()));
+            } catch (IOException ignored) {
+                // The cache is an optimization; a full or read-only cache directory must not fail the analysis.
+            }
+            metrics.recordSince(Stage.CACHE, start);
+        }
+        return result;
+    }
+
+    private Settings settings() {
+        return new Settings(analysisCache, extractionShards, blockContent);
+    }
+
+    private PDDocument load(File pdfFile, SegmentationMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        PDDocument document = loader.load(pdfFile);
+        metrics.recordSince(Stage.LOAD, start);
+        metrics.add(Counter.READ_BYTES, pdfFile.length());
+        return document;
+    }
+
+    private void recordCounts(SegmentationMetrics metrics, int totalPages, int blockCount, int gapCount) {
+        metrics.increment(Counter.DOCUMENTS);
+        metrics.add(Counter.PAGES, totalPages);
+        metrics.add(Counter.BLOCKS, blockCount);
+        metrics.add(Counter.GAPS, gapCount);
+    }
+
+    // Keeps only the best numCuts gaps and the last block seen, so memory does not grow with page count.
+    private class StreamingGapCollector implements PageBlocksConsumer {
+        private final String documentPath;
+        private final PDDocument document;
+        private final TopGapSelector selector;
+        private final SegmentationMetrics metrics;
+        private int previousPage = -1;
+        private float previousEndY;
+        private int blockCount;
+        private int gapCount;
+
+        StreamingGapCollector(String documentPath, PDDocument document, int numCuts, SegmentationMetrics metrics) {
+            this.documentPath = documentPath;
+            this.document = document;
+            this.selector = new TopGapSelector(numCuts);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void accept(int pageNum, List<TextBlock> pageBlocks) {
+            // Gap measurement and offering to the selector are interleaved here, so both count as gap time.
+            SegmentationEvents.GapFinding event = new SegmentationEvents.GapFinding();
+            event.begin();
+            long start = System.nanoTime();
+            int gapsBefore = gapCount;
+            for (TextBlock block : pageBlocks) {
+                if (previousPage >= 0) {
+                    float gapSize = gapBetween(previousPage, previousEndY, block.getPageNumber(), block.getStartY(), document);
+                    if (gapSize > 0) {
+                        selector.offer(gapSize, previousEndY, previousPage, blockCount - 1);
+                        gapCount++;
+                    }
+                }
+                previousPage = block.getPageNumber();
+                previousEndY = block.getEndY();
+                blockCount++;
+            }
+            metrics.recordSince(Stage.GAPS, start);
+            if (event.shouldCommit()) {
+                event.documentPath = documentPath;
+                event.blockCount = pageBlocks.size();
+                event.gapCount = gapCount - gapsBefore;
+                event.commit();
+            }
         }
     }
 
+    // The configuration one analysis call runs with.
+    private static class Settings {
+        final AnalysisCache analysisCache;
+        final int extractionShards;
+        final BlockContent blockContent;
+
+        Settings(AnalysisCache analysisCache, int extractionShards, BlockContent blockContent) {
+            this.analysisCache = analysisCache;
+            this.extractionShards = extractionShards;
+            this.blockContent = blockContent;
+        }
+    }
+
+    private static class LazyBlockText implements Supplier<String> {
+        private final List<LineIndex.Line> lines;
+        private final GlyphBuffer glyphs;
+
+        LazyBlockText(List<LineIndex.Line> lines, GlyphBuffer glyphs) {
+            this.lines = lines;
+            this.glyphs = glyphs;
+        }
+
+        // Synchronized because sorting a line by x reorders it in place.
+        @Override
+        public synchronized String get() {
+            return blockText(lines, glyphs);
+        }
+    }
+
+    private interface PageBlocksConsumer {
+        void accept(int pageNum, List<TextBlock> pageBlocks) throws IOException;
+    }
+
+    private static class PendingPage {
+        final int pageNum;
+        final Future<List<TextBlock>> future;
+
+        PendingPage(int pageNum, Future<List<TextBlock>> future) {
+            this.pageNum = pageNum;
+            this.future = future;
+        }
+    }
+
+    // Blocks and gaps are held in columnar form whatever list type is passed in; results kept in memory for
+    // many documents then cost a few primitive arrays each instead of one object per block and per gap.
     public static class AnalysisResult {
-        private final List<TextBlock> textBlocks;
-        private final List<WhitespaceGap> gaps;
+        private final TextBlockColumns textBlocks;
+        private final GapColumns gaps;
         private final List<CutPoint> cutPoints;
         private final int totalPages;
+        private final int blockCount;
+        private final SegmentationMetrics metrics;
 
         public AnalysisResult(List<TextBlock> textBlocks, List<WhitespaceGap> gaps, 
                              List<CutPoint> cutPoints, int totalPages) {
-            this.textBlocks = textBlocks;
-            this.gaps = gaps;
+            this(textBlocks, gaps, cutPoints, totalPages, textBlocks.size());
+        }
+
+        public AnalysisResult(List<TextBlock> textBlocks, List<WhitespaceGap> gaps,
+                             List<CutPoint> cutPoints, int totalPages, int blockCount) {
+            this(textBlocks, gaps, cutPoints, totalPages, blockCount, new SegmentationMetrics());
+        }
+
+        public AnalysisResult(List<TextBlock> textBlocks, List<WhitespaceGap> gaps,
+                             List<CutPoint> cutPoints, int totalPages, int blockCount, SegmentationMetrics metrics) {
+            this.textBlocks = TextBlockColumns.of(textBlocks);
+            this.gaps = GapColumns.of(gaps);
             this.cutPoints = cutPoints;
             this.totalPages = totalPages;
+            this.blockCount = blockCount;
+            this.metrics = metrics;
         }
 
         public List<TextBlock> getTextBlocks() { return textBlocks; }
         public List<WhitespaceGap> getGaps() { return gaps; }
         public List<CutPoint> getCutPoints() { return cutPoints; }
         public int getTotalPages() { return totalPages; }
+        public int getBlockCount() { return blockCount; }
+        public SegmentationMetrics getMetrics() { return metrics; }
     }
 }
 
@@ -0,0 +1,224 @@
+package com.pdfsegmenter.analyzer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+// Byte-level pre-pass over a decoded content stream that keeps only the operators PDFTextStripper's engine
+// registers (text showing, text state, q/Q/cm, gs and Do), each with the operand bytes in front of it, and
+// drops everything else: path construction and painting, clipping, colour, shading and inline images.
+// Those operators are ignored by the text engine anyway, but PDFStreamParser still has to turn every
+// coordinate into a COSFloat and copy every inline image, which dominates on vector art and image-heavy
+// pages. Kept commands are copied byte for byte, so the engine sees the same operators and operands.
+final class TextOperatorFilter {
+    private static final Set<String> TEXT_OPERATORS = new HashSet<>(Arrays.asList(
+            "BT", "ET", "Td", "TD", "Tm", "T*", "Tj", "TJ", "'", "\"",
+            "Tc", "Tw", "Tz", "TL", "Tf", "Tr", "Ts", "q", "Q", "cm", "gs", "Do"));
+    // Without these the filtered stream can hold no glyphs, so the caller may skip it entirely.
+    private static final Set<String> GLYPH_SOURCES = new HashSet<>(Arrays.asList(
+            "Tj", "TJ", "'", "\"", "Do"));
+
+    private final byte[] content;
+    private final ByteArrayOutputStream kept;
+    private boolean hasGlyphSources;
+    private int pos;
+
+    private TextOperatorFilter(byte[] content) {
+        this.content = content;
+        this.kept = new ByteArrayOutputStream(Math.min(content.length, 1 << 16));
+    }
+
+    // Returns null when the stream cannot contain text, or the unfiltered bytes when the syntax is not
+    // understood, so that PDFBox's own, more lenient parser decides what the stream means.
+    static byte[] filter(byte[] content) {
+        TextOperatorFilter filter = new TextOperatorFilter(content);
+        if (!filter.run()) {
+            return content;
+        }
+        return filter.hasGlyphSources ? filter.kept.toByteArray() : null;
+    }
+
+    private boolean run() {
+        int commandStart = 0;
+        while (true) {
+            skipWhitespaceAndComments();
+            if (pos >= content.length) {
+                return true;
+            }
+            int b = content[pos] & 0xff;
+            if (b == '(') {
+                if (!skipLiteralString()) {
+                    return false;
+                }
+            } else if (b == '<') {
+                if (pos + 1 < content.length && content[pos + 1] == '<') {
+                    pos += 2;
+                } else if (!skipHexString()) {
+                    return false;
+                }
+            } else if (b == '>') {
+                // Only the closing ">>" of a dictionary operand can appear here.
+                if (pos + 1 >= content.length || content[pos + 1] != '>') {
+                    return false;
+                }
+                pos += 2;
+            } else if (b == '[' || b == ']' || b == '{' || b == '}') {
+                pos++;
+            } else if (b == '/') {
+                pos++;
+                skipRegular();
+            } else if (b == ')') {
+                return false;
+            } else {
+                int start = pos;
+                skipRegular();
+                if (pos == start) {
+                    return false;
+                }
+                if (isOperand(start, pos)) {
+                    continue;
+                }
+                String operator = new String(content, start, pos - start, StandardCharsets.ISO_8859_1);
+                if (operator.equals("BI")) {
+                    if (!skipInlineImage()) {
+                        return false;
+                    }
+                } else if (TEXT_OPERATORS.contains(operator)) {
+                    kept.write(content, commandStart, pos - commandStart);
+                    kept.write('\n');
+                    hasGlyphSources |= GLYPH_SOURCES.contains(operator);
+                }
+                commandStart = pos;
+            }
+        }
+    }
+
+    private boolean isOperand(int start, int end) {
+        int first = content[start];
+        if (first >= '0' && first <= '9' || first == '+' || first == '-' || first == '.') {
+            return true;
+        }
+        return matches(start, end, "true") || matches(start, end, "false") || matches(start, end, "null");
+    }
+
+    private boolean matches(int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (content[start + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (pos < content.length) {
+            int b = content[pos];
+            if (isWhitespace(b)) {
+                pos++;
+            } else if (b == '%') {
+                while (pos < content.length && content[pos] != '\n' && content[pos] != '\r') {
+                    pos++;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void skipRegular() {
+        while (pos < content.length && !isWhitespace(content[pos]) && !isDelimiter(content[pos])) {
+            pos++;
+        }
+    }
+
+    private boolean skipLiteralString() {
+        int depth = 0;
+        while (pos < content.length) {
+            int b = content[pos++];
+            if (b == '\\') {
+                pos++;
+            } else if (b == '(') {
+                depth++;
+            } else if (b == ')' && --depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipHexString() {
+        while (++pos < content.length) {
+            if (content[pos] == '>') {
+                pos++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Skips "BI <dictionary> ID <data> EI"; pos is just past BI.
+    private boolean skipInlineImage() {
+        while (true) {
+            skipWhitespaceAndComments();
+            if (pos + 2 > content.length) {
+                return false;
+            }
+            if (content[pos] == 'I' && content[pos + 1] == 'D'
+                    && (pos + 2 == content.length || isWhitespace(content[pos + 2]))) {
+                pos += 3;
+                break;
+            }
+            int b = content[pos];
+            if (b == '(') {
+                if (!skipLiteralString()) {
+                    return false;
+                }
+            } else if (b == '<' || b == '>' || b == '[' || b == ']') {
+                pos++;
+            } else {
+                if (b == '/') {
+                    pos++;
+                }
+                int start = pos;
+                skipRegular();
+                if (pos == start) {
+                    return false;
+                }
+            }
+        }
+        // The data ends at the first "EI" that stands alone and is followed by text, as PDFStreamParser decides.
+        for (; pos + 1 < content.length; pos++) {
+            if (content[pos] == 'E' && content[pos + 1] == 'I' && isWhitespace(content[pos - 1])
+                    && (pos + 2 == content.length || isWhitespace(content[pos + 2])) && followedByText(pos + 2)) {
+                pos += 2;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean followedByText(int from) {
+        int end = Math.min(content.length, from + 10);
+        for (int i = from; i < end; i++) {
+            int b = content[i] & 0xff;
+            if (b > 0x7f || b < 0x20 && !isWhitespace(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isDelimiter(int b) {
+        return b == '(' || b == ')' || b == '<' || b == '>' || b == '[' || b == ']'
+                || b == '{' || b == '}' || b == '/' || b == '%';
+    }
+}
@@ -1,38 +1,263 @@
 package com.pdfsegmenter.analyzer;
 
+import com.pdfsegmenter.metrics.SegmentationEvents;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public class TextPositionExtractor extends PDFTextStripper {
-    private final List<TextPosition> positions = new ArrayList<>();
-    private int currentPage = 0;
+    private final GlyphBufferPool bufferPool;
+    private SegmentationMetrics metrics;
+    private PageHandler pageHandler;
+    // Filtered form XObjects by stream, so a form drawn on every page is scanned once per document.
+    private final Map<COSStream, Optional<byte[]>> filteredForms = new IdentityHashMap<>();
+    private boolean textOnly = true;
+    private String documentPath;
+    private GlyphBuffer glyphs;
+    private long pageStartNanos;
+    private SegmentationEvents.PageExtraction pageEvent;
+    // Set while extract(document, firstPageIndex, pages) runs; PDFTextStripper does not count those pages.
+    private List<PDPage> rangePages;
+    private int rangePageIndex;
 
-    public TextPositionExtractor() throws IOException {
+    TextPositionExtractor(GlyphBufferPool bufferPool, PageHandler pageHandler) throws IOException {
+        this(bufferPool, new SegmentationMetrics(), pageHandler);
+    }
+
+    TextPositionExtractor(GlyphBufferPool bufferPool, SegmentationMetrics metrics, PageHandler pageHandler) throws IOException {
         super();
+        this.bufferPool = bufferPool;
+        this.metrics = metrics;
+        this.pageHandler = pageHandler;
+    }
+
+    public void extract(PDDocument document) throws IOException {
+        clear();
+        try {
+            writeText(document, Writer.nullWriter());
+        } finally {
+            clear();
+            filteredForms.clear();
+        }
+    }
+
+    // Extracts only the given pages, the first of which is page firstPageIndex (0-based) of document, without
+    // walking the page tree to find them.
+    void extract(PDDocument document, int firstPageIndex, List<PDPage> pages) throws IOException {
+        rangePages = pages;
+        rangePageIndex = firstPageIndex - 1;
+        // PDFTextStripper checks its own page count, which stays at 0 here, against the start and end page.
+        setStartPage(0);
+        setEndPage(Integer.MAX_VALUE);
+        try {
+            extract(document);
+        } finally {
+            rangePages = null;
+            setStartPage(1);
+        }
+    }
+
+    // Points a pooled extractor at the next run; see ExtractorPool.
+    void bind(String documentPath, SegmentationMetrics metrics, PageHandler pageHandler) {
+        this.documentPath = documentPath;
+        this.metrics = metrics;
+        this.pageHandler = pageHandler;
+    }
+
+    // Back to the state of a new extractor, minus the allocations. The engine's per-page state is reset by
+    // PDFBox at the start of every page; the document and writer are dropped so an idle extractor does not
+    // keep a closed document reachable.
+    void reset() {
+        clear();
+        filteredForms.clear();
+        pageEvent = null;
+        rangePages = null;
+        textOnly = true;
+        setStartPage(1);
+        setEndPage(Integer.MAX_VALUE);
+        bind(null, null, null);
+        document = null;
+        output = null;
+    }
+
+    // When set (the default), content streams pass through TextOperatorFilter before PDFBox parses them.
+    void setTextOnly(boolean textOnly) {
+        this.textOnly = textOnly;
+    }
+
+    // Recorded on page extraction events only.
+    void setDocumentPath(String documentPath) {
+        this.documentPath = documentPath;
+    }
+
+    @Override
+    protected void processPages(PDPageTree pages) throws IOException {
+        if (rangePages == null) {
+            super.processPages(pages);
+            return;
+        }
+        for (PDPage page : rangePages) {
+            rangePageIndex++;
+            if (page.hasContents()) {
+                processPage(page);
+            }
+        }
+    }
+
+    @Override
+    public void processPage(PDPage page) throws IOException {
+        // Pages outside the start/end range are skipped by PDFTextStripper; don't filter them first.
+        int pageNo = getCurrentPageNo();
+        boolean selected = rangePages != null || (pageNo >= getStartPage() && pageNo <= getEndPage());
+        if (!textOnly || !page.hasContents() || !selected) {
+            super.processPage(page);
+            return;
+        }
+        byte[] content;
+        try (InputStream in = page.getContents()) {
+            content = TextOperatorFilter.filter(in.readAllBytes());
+        }
+        // Same dictionary and resources, so boxes, rotation and the font cache are unchanged.
+        super.processPage(new PDPage(page.getCOSObject()) {
+            @Override
+            public InputStream getContents() {
+                return new ByteArrayInputStream(content != null ? content : new byte[0]);
+            }
+
+            @Override
+            public PDResources getResources() {
+                return page.getResources();
+            }
+        });
+    }
+
+    @Override
+    public void showForm(PDFormXObject form) throws IOException {
+        if (!textOnly) {
+            super.showForm(form);
+            return;
+        }
+        byte[] content = filteredForm(form);
+        if (content != null) {
+            super.showForm(new PDFormXObject(form.getCOSObject()) {
+                @Override
+                public InputStream getContents() {
+                    return new ByteArrayInputStream(content);
+                }
+
+                @Override
+                public PDResources getResources() {
+                    return form.getResources();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void showTransparencyGroup(PDTransparencyGroup group) throws IOException {
+        if (!textOnly) {
+            super.showTransparencyGroup(group);
+            return;
+        }
+        byte[] content = filteredForm(group);
+        if (content != null) {
+            super.showTransparencyGroup(new PDTransparencyGroup(group.getCOSObject(), null) {
+                @Override
+                public InputStream getContents() {
+                    return new ByteArrayInputStream(content);
+                }
+
+                @Override
+                public PDResources getResources() {
+                    return group.getResources();
+                }
+            });
+        }
+    }
+
+    private byte[] filteredForm(PDFormXObject form) throws IOException {
+        Optional<byte[]> filtered = filteredForms.get(form.getCOSObject());
+        if (filtered == null) {
+            try (InputStream in = form.getContents()) {
+                filtered = Optional.ofNullable(TextOperatorFilter.filter(in.readAllBytes()));
+            }
+            filteredForms.put(form.getCOSObject(), filtered);
+        }
+        return filtered.orElse(null);
     }
 
     @Override
     protected void processTextPosition(TextPosition text) {
-        positions.add(text);
+        glyphs.add(text.getX(), text.getY(), text.getWidth(), text.getHeight(), text.getUnicode());
     }
 
     @Override
-    protected void startPage(org.apache.pdfbox.pdmodel.PDPage page) throws IOException {
-        currentPage++;
+    protected void startPage(PDPage page) throws IOException {
+        clear();
+        pageEvent = new SegmentationEvents.PageExtraction();
+        pageEvent.begin();
+        pageStartNanos = System.nanoTime();
+        glyphs = bufferPool.acquire();
         super.startPage(page);
     }
 
-    public List<TextPosition> getPositions() {
-        return positions;
+    @Override
+    protected void writePage() {
+        // Glyphs are handed over in endPage; no text output is needed.
+    }
+
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+        super.endPage(page);
+        GlyphBuffer pageGlyphs = glyphs;
+        glyphs = null;
+        // Only the page's own content stream processing is counted; the handler's work is timed by the caller.
+        metrics.recordSince(SegmentationMetrics.Stage.EXTRACT, pageStartNanos);
+        metrics.add(SegmentationMetrics.Counter.GLYPHS, pageGlyphs.size());
+        if (pageEvent.shouldCommit()) {
+            pageEvent.documentPath = documentPath;
+            pageEvent.pageIndex = pageIndex();
+            pageEvent.glyphCount = pageGlyphs.size();
+            pageEvent.commit();
+        }
+        pageEvent = null;
+        if (pageGlyphs.isEmpty()) {
+            bufferPool.release(pageGlyphs);
+        } else {
+            pageHandler.onPage(pageIndex(), pageGlyphs);
+        }
+    }
+
+    // 0-based index in the document of the page being extracted.
+    private int pageIndex() {
+        return rangePages != null ? rangePageIndex : getCurrentPageNo() - 1;
     }
 
     public void clear() {
-        positions.clear();
-        currentPage = 0;
+        if (glyphs != null) {
+            bufferPool.release(glyphs);
+            glyphs = null;
+        }
     }
-}
 
+    interface PageHandler {
+        // Called for non-empty pages only; the handler owns the buffer and must release it to the pool.
+        void onPage(int pageIndex, GlyphBuffer glyphs) throws IOException;
+    }
+}
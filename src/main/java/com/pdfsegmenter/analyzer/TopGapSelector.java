@@ -0,0 +1,137 @@
+package com.pdfsegmenter.analyzer;
+
+import com.pdfsegmenter.model.GapColumns;
+import com.pdfsegmenter.model.WhitespaceGap;
+
+import java.util.Arrays;
+
+// Gaps are kept in primitive columns indexed by slot, and the heap orders slot numbers, so offering a gap
+// never allocates and sifting moves one int instead of a gap object.
+class TopGapSelector {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private float[] sizes;
+    private float[] yPositions;
+    private int[] pages;
+    private int[] blocksBefore;
+    private long[] order;
+    private int[] heap;
+    private int size;
+    private long offered;
+
+    TopGapSelector(int capacity) {
+        this.capacity = capacity;
+        int initial = Math.min(capacity, INITIAL_CAPACITY);
+        this.sizes = new float[initial];
+        this.yPositions = new float[initial];
+        this.pages = new int[initial];
+        this.blocksBefore = new int[initial];
+        this.order = new long[initial];
+        this.heap = new int[initial];
+    }
+
+    void offer(WhitespaceGap gap) {
+        offer(gap.getGapSize(), gap.getYPosition(), gap.getPageNumber(), gap.getBlockIndexBefore());
+    }
+
+    void offer(float gapSize, float yPosition, int pageNumber, int blockIndexBefore) {
+        long gapOrder = offered++;
+        if (size < capacity) {
+            if (size == heap.length) {
+                grow();
+            }
+            set(size, gapSize, yPosition, pageNumber, blockIndexBefore, gapOrder);
+            heap[size] = size;
+            siftUp(size++);
+        } else if (capacity > 0 && ranksBefore(gapSize, gapOrder, heap[0])) {
+            // The smallest kept gap leaves; its slot takes the new one.
+            set(heap[0], gapSize, yPosition, pageNumber, blockIndexBefore, gapOrder);
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Largest gaps first; equal gaps keep the order they were offered in, as a stable sort would.
+    GapColumns drainRanked() {
+        int[] ranked = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            ranked[i] = heap[0];
+            size--;
+            heap[0] = heap[size];
+            siftDown(0);
+        }
+        GapColumns gaps = new GapColumns();
+        for (int slot : ranked) {
+            gaps.add(sizes[slot], yPositions[slot], pages[slot], blocksBefore[slot]);
+        }
+        return gaps;
+    }
+
+    private void grow() {
+        int grown = (int) Math.min(capacity, heap.length * 2L);
+        sizes = Arrays.copyOf(sizes, grown);
+        yPositions = Arrays.copyOf(yPositions, grown);
+        pages = Arrays.copyOf(pages, grown);
+        blocksBefore = Arrays.copyOf(blocksBefore, grown);
+        order = Arrays.copyOf(order, grown);
+        heap = Arrays.copyOf(heap, grown);
+    }
+
+    private void set(int slot, float gapSize, float yPosition, int pageNumber, int blockIndexBefore, long gapOrder) {
+        sizes[slot] = gapSize;
+        yPositions[slot] = yPosition;
+        pages[slot] = pageNumber;
+        blocksBefore[slot] = blockIndexBefore;
+        order[slot] = gapOrder;
+    }
+
+    private boolean ranksBefore(float gapSize, long gapOrder, int slot) {
+        int compare = Float.compare(gapSize, sizes[slot]);
+        return compare > 0 || (compare == 0 && gapOrder < order[slot]);
+    }
+
+    // True when the gap in slot a ranks before the one in slot b.
+    private boolean slotRanksBefore(int a, int b) {
+        return ranksBefore(sizes[a], order[a], b);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!slotRanksBefore(heap[parent], heap[index])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && slotRanksBefore(heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < size && slotRanksBefore(heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int slot = heap[a];
+        heap[a] = heap[b];
+        heap[b] = slot;
+    }
+}
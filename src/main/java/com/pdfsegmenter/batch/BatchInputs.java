@@ -0,0 +1,80 @@
+package com.pdfsegmenter.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public final class BatchInputs {
+    private BatchInputs() {
+    }
+
+    // "-" reads a file list from stdin, an existing directory is searched recursively, anything else is a glob.
+    public static List<File> resolve(String source, Reader stdin) throws IOException {
+        if ("-".equals(source)) {
+            return fromList(stdin);
+        }
+        File file = new File(source);
+        if (file.isDirectory()) {
+            return fromDirectory(file);
+        }
+        return fromGlob(source);
+    }
+
+    public static List<File> fromDirectory(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException("Not a directory: " + directory.getAbsolutePath());
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".pdf"))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static List<File> fromGlob(String pattern) throws IOException {
+        Path base = globBase(pattern);
+        if (!Files.isDirectory(base)) {
+            return new ArrayList<>();
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        boolean relative = !Paths.get(pattern).isAbsolute();
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(relative ? path.normalize() : path.toAbsolutePath()))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    public static List<File> fromList(Reader reader) throws IOException {
+        List<File> files = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                files.add(new File(line));
+            }
+        }
+        return files;
+    }
+
+    // The longest leading run of path elements without glob syntax; only this subtree is walked.
+    private static Path globBase(String pattern) {
+        Path path = Paths.get(pattern.replace('\\', '/').split("[*?\\[{]", 2)[0] + "x").getParent();
+        return path != null ? path : Paths.get(".");
+    }
+}
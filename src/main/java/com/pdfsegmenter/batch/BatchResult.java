@@ -0,0 +1,65 @@
+package com.pdfsegmenter.batch;
+
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchResult {
+    public enum Status {
+        SUCCESS, FAILED
+    }
+
+    private final File inputFile;
+    private final File outputDir;
+    private final Status status;
+    private final List<File> segments;
+    private final String stage;
+    private final Throwable error;
+    private final long elapsedMillis;
+    private final SegmentationMetrics metrics;
+
+    private BatchResult(File inputFile, File outputDir, Status status, List<File> segments,
+                        String stage, Throwable error, long elapsedMillis, SegmentationMetrics metrics) {
+        this.inputFile = inputFile;
+        this.outputDir = outputDir;
+        this.status = status;
+        this.segments = segments;
+        this.stage = stage;
+        this.error = error;
+        this.elapsedMillis = elapsedMillis;
+        this.metrics = metrics;
+    }
+
+    static BatchResult success(File inputFile, File outputDir, List<File> segments, long elapsedMillis,
+                               SegmentationMetrics metrics) {
+        return new BatchResult(inputFile, outputDir, Status.SUCCESS, Collections.unmodifiableList(segments),
+                null, null, elapsedMillis, metrics);
+    }
+
+    static BatchResult failure(File inputFile, File outputDir, String stage, Throwable error, long elapsedMillis,
+                               SegmentationMetrics metrics) {
+        return new BatchResult(inputFile, outputDir, Status.FAILED, Collections.emptyList(),
+                stage, error, elapsedMillis, metrics);
+    }
+
+    public File getInputFile() { return inputFile; }
+    public File getOutputDir() { return outputDir; }
+    public Status getStatus() { return status; }
+    public boolean isSuccess() { return status == Status.SUCCESS; }
+    public List<File> getSegments() { return segments; }
+    // The pipeline stage that failed: load, analyze or write. Null for successful files.
+    public String getStage() { return stage; }
+    public Throwable getError() { return error; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    // Covers whatever stages ran before a failure.
+    public SegmentationMetrics getMetrics() { return metrics; }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+                ? String.format("BatchResult[%s, %s, segments=%d]", inputFile, status, segments.size())
+                : String.format("BatchResult[%s, %s at %s: %s]", inputFile, status, stage, error);
+    }
+}
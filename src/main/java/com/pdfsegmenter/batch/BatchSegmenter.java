@@ -0,0 +1,312 @@
+package com.pdfsegmenter.batch;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import com.pdfsegmenter.util.NamedThreadFactory;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+public class BatchSegmenter {
+    private final PDFSegmenter segmenter;
+    private int loadThreads = 1;
+    private int analyzeThreads = 1;
+    private int writeThreads = 1;
+    private int queueCapacity = 2;
+    private Consumer<BatchResult> listener = result -> { };
+
+    public BatchSegmenter(PDFSegmenter segmenter) {
+        this.segmenter = segmenter;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = requirePositive(loadThreads, "Number of load threads");
+    }
+
+    public void setAnalyzeThreads(int analyzeThreads) {
+        this.analyzeThreads = requirePositive(analyzeThreads, "Number of analyze threads");
+    }
+
+    public void setWriteThreads(int writeThreads) {
+        this.writeThreads = requirePositive(writeThreads, "Number of write threads");
+    }
+
+    // Documents allowed to wait in front of each stage; a full queue blocks the stage before it.
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = requirePositive(queueCapacity, "Queue capacity");
+    }
+
+    // Called from the worker thread that finished the file, as soon as its result is known.
+    public void setListener(Consumer<BatchResult> listener) {
+        this.listener = listener;
+    }
+
+    public List<BatchResult> run(List<File> inputs, int numCuts, File outputRoot) throws IOException, InterruptedException {
+        if (numCuts < 1) {
+            throw new IllegalArgumentException("Number of cuts must be at least 1");
+        }
+        Files.createDirectories(outputRoot.toPath());
+
+        Run run = new Run(inputs.size(), numCuts);
+        List<File> outputDirs = assignOutputDirs(inputs, outputRoot);
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                Job job = new Job(i, inputs.get(i), outputDirs.get(i));
+                run.loadStage.submit(() -> run.load(job));
+            }
+            run.done.await();
+        } finally {
+            run.shutdown();
+        }
+        return Arrays.asList(run.results);
+    }
+
+    public static void writeSummary(List<BatchResult> results, File summaryFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(summaryFile.toPath(), StandardCharsets.UTF_8))) {
+            out.println("input\tstatus\tsegments\telapsed_ms\tstage\terror");
+            for (BatchResult result : results) {
+                out.print(summaryField(result.getInputFile().getPath()));
+                out.print('\t');
+                out.print(result.getStatus());
+                out.print('\t');
+                out.print(result.getSegments().size());
+                out.print('\t');
+                out.print(result.getElapsedMillis());
+                out.print('\t');
+                out.print(result.isSuccess() ? "" : result.getStage());
+                out.print('\t');
+                out.println(result.isSuccess() ? "" : summaryField(errorMessage(result.getError())));
+            }
+        }
+    }
+
+    // One JSON object per line, so large batches can be streamed and grepped for outliers.
+    public static void writeMetricsJson(List<BatchResult> results, File metricsFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(metricsFile.toPath(), StandardCharsets.UTF_8))) {
+            for (BatchResult result : results) {
+                out.print("{\"input\":");
+                out.print(jsonString(result.getInputFile().getPath()));
+                out.print(",\"status\":\"");
+                out.print(result.getStatus());
+                out.print("\",\"elapsed_ms\":");
+                out.print(result.getElapsedMillis());
+                out.print(",\"metrics\":");
+                out.print(result.getMetrics().toJson());
+                out.println('}');
+            }
+        }
+    }
+
+    public static SegmentationMetrics totals(List<BatchResult> results) {
+        SegmentationMetrics totals = new SegmentationMetrics();
+        for (BatchResult result : results) {
+            totals.merge(result.getMetrics());
+        }
+        return totals;
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static List<File> assignOutputDirs(List<File> inputs, File outputRoot) {
+        // Inputs from different directories may share a name; later ones get a numeric suffix.
+        List<File> outputDirs = new ArrayList<>();
+        Set<String> used = new HashSet<>();
+        for (File input : inputs) {
+            String baseName = input.getName().replaceFirst("[.][^.]+$", "") + "_segments";
+            String name = baseName;
+            for (int n = 2; !used.add(name); n++) {
+                name = baseName + "_" + n;
+            }
+            outputDirs.add(new File(outputRoot, name));
+        }
+        return outputDirs;
+    }
+
+    private static String errorMessage(Throwable error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+    }
+
+    private static String summaryField(String value) {
+        return value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1");
+        }
+        return value;
+    }
+
+    private class Run {
+        private final int numCuts;
+        private final BatchResult[] results;
+        private final CountDownLatch done;
+        private final Stage loadStage = new Stage("load", loadThreads, queueCapacity);
+        private final Stage analyzeStage = new Stage("analyze", analyzeThreads, queueCapacity);
+        private final Stage writeStage = new Stage("write", writeThreads, queueCapacity);
+
+        Run(int inputCount, int numCuts) {
+            this.numCuts = numCuts;
+            this.results = new BatchResult[inputCount];
+            this.done = new CountDownLatch(inputCount);
+        }
+
+        void load(Job job) {
+            job.startNanos = System.nanoTime();
+            try {
+                job.document = segmenter.getLoader().load(job.inputFile);
+                job.metrics.recordSince(SegmentationMetrics.Stage.LOAD, job.startNanos);
+                job.metrics.add(SegmentationMetrics.Counter.READ_BYTES, job.inputFile.length());
+            } catch (Throwable e) {
+                // Errors too: a StackOverflowError on a malformed file must still finish the job, or run() waits forever.
+                fail(job, loadStage, e);
+                return;
+            }
+            handOff(job, analyzeStage, () -> analyze(job));
+        }
+
+        void analyze(Job job) {
+            try {
+                job.analysis = segmenter.analyze(job.inputFile, job.document, numCuts, job.metrics);
+            } catch (Throwable e) {
+                fail(job, analyzeStage, e);
+                return;
+            }
+            handOff(job, writeStage, () -> write(job));
+        }
+
+        void write(Job job) {
+            List<File> segments;
+            try {
+                segments = segmenter.writeSegments(job.document, job.inputFile, job.analysis, job.outputDir);
+            } catch (Throwable e) {
+                fail(job, writeStage, e);
+                return;
+            }
+            job.close();
+            complete(job, BatchResult.success(job.inputFile, job.outputDir, segments, job.elapsedMillis(), job.metrics));
+        }
+
+        private void handOff(Job job, Stage next, Runnable task) {
+            try {
+                next.submit(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(job, next, new InterruptedIOException("Interrupted while waiting for the " + next.name + " stage"));
+            }
+        }
+
+        private void fail(Job job, Stage stage, Throwable error) {
+            job.close();
+            job.metrics.increment(SegmentationMetrics.Counter.FAILED_DOCUMENTS);
+            complete(job, BatchResult.failure(job.inputFile, job.outputDir, stage.name, error, job.elapsedMillis(),
+                    job.metrics));
+        }
+
+        private void complete(Job job, BatchResult result) {
+            results[job.index] = result;
+            try {
+                listener.accept(result);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void shutdown() {
+            loadStage.pool.shutdownNow();
+            analyzeStage.pool.shutdownNow();
+            writeStage.pool.shutdownNow();
+        }
+    }
+
+    private static class Stage {
+        private final String name;
+        private final ExecutorService pool;
+        private final Semaphore slots;
+
+        Stage(String name, int threads, int queueCapacity) {
+            this.name = name;
+            this.pool = Executors.newFixedThreadPool(threads, new NamedThreadFactory("batch-" + name));
+            this.slots = new Semaphore(threads + queueCapacity);
+        }
+
+        // Blocks while the stage is busy and its queue is full, which is what pushes back on earlier stages.
+        void submit(Runnable task) throws InterruptedException {
+            slots.acquire();
+            try {
+                pool.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        slots.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+    }
+
+    private static class Job {
+        private final int index;
+        private final File inputFile;
+        private final File outputDir;
+        private final SegmentationMetrics metrics = new SegmentationMetrics();
+        private long startNanos;
+        private PDDocument document;
+        private PDFAnalyzer.AnalysisResult analysis;
+
+        Job(int index, File inputFile, File outputDir) {
+            this.index = index;
+            this.inputFile = inputFile;
+            this.outputDir = outputDir;
+        }
+
+        long elapsedMillis() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        void close() {
+            // The analysis is dropped with the document so a finished job holds nothing large.
+            analysis = null;
+            if (document != null) {
+                try {
+                    document.close();
+                } catch (IOException ignored) {
+                    // The segments are already written or the file has already failed.
+                }
+                document = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.pdfsegmenter.cache;
+
+import com.pdfsegmenter.model.GapColumns;
+import com.pdfsegmenter.model.TextBlockColumns;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Entries are immutable files named by key. Reads refresh the modification time, which eviction
+// uses as the LRU order, so the cache survives restarts and can be shared by several processes.
+public class AnalysisCache {
+    private static final int MAGIC = 0x50534143;
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".analysis";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public AnalysisCache(File directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        this.directory = directory.toPath();
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory);
+    }
+
+    public File getDirectory() {
+        return directory.toFile();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // SHA-256 of the file content followed by the analyzer parameters, so a changed setting never hits an old entry.
+    public String key(File pdfFile, String parameters) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(pdfFile.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update((byte) 0);
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    // Returns null on a miss. Unreadable or stale-format entries are deleted and count as misses.
+    public CachedAnalysis get(String key) {
+        Path entry = entryPath(key);
+        CachedAnalysis analysis;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            analysis = read(in, Files.size(entry));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(entry);
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Evicted concurrently; the entry has already been read.
+        }
+        return analysis;
+    }
+
+    public void put(String key, CachedAnalysis analysis) throws IOException {
+        // Written to a temp file and moved into place so readers never see a partial entry.
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                write(out, analysis);
+            }
+            Path entry = entryPath(key);
+            try {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            deleteQuietly(temp);
+        }
+        evict();
+    }
+
+    public synchronized void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path entry : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                    entries.add(entry);
+                    attributes.add(attrs);
+                    totalBytes += attrs.size();
+                } catch (NoSuchFileException ignored) {
+                    // Removed by another process while listing.
+                }
+            }
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+        for (int i : order) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            deleteQuietly(entries.get(i));
+            totalBytes -= attributes.get(i).size();
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static void write(DataOutputStream out, CachedAnalysis analysis) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(analysis.getTotalPages());
+
+        TextBlockColumns blocks = TextBlockColumns.of(analysis.getTextBlocks());
+        out.writeInt(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            out.writeFloat(blocks.getStartY(i));
+            out.writeFloat(blocks.getEndY(i));
+            out.writeInt(blocks.getPageNumber(i));
+            // writeUTF is limited to 64 KB, which a long block of text can exceed.
+            byte[] content = blocks.getContent(i).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(content.length);
+            out.write(content);
+        }
+
+        GapColumns gaps = GapColumns.of(analysis.getGaps());
+        out.writeInt(gaps.size());
+        for (int i = 0; i < gaps.size(); i++) {
+            out.writeFloat(gaps.getGapSize(i));
+            out.writeFloat(gaps.getYPosition(i));
+            out.writeInt(gaps.getPageNumber(i));
+            out.writeInt(gaps.getBlockIndexBefore(i));
+        }
+    }
+
+    // Counts are checked against the entry size so a corrupt entry fails instead of allocating huge arrays.
+    private static CachedAnalysis read(DataInputStream in, long entryBytes) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unrecognized cache entry");
+        }
+        int totalPages = in.readInt();
+
+        int blockCount = checkCount(in.readInt(), entryBytes);
+        TextBlockColumns blocks = new TextBlockColumns();
+        for (int i = 0; i < blockCount; i++) {
+            float startY = in.readFloat();
+            float endY = in.readFloat();
+            int pageNumber = in.readInt();
+            byte[] content = new byte[checkCount(in.readInt(), entryBytes)];
+            in.readFully(content);
+            blocks.add(startY, endY, pageNumber, new String(content, StandardCharsets.UTF_8));
+        }
+
+        int gapCount = checkCount(in.readInt(), entryBytes);
+        GapColumns gaps = new GapColumns();
+        for (int i = 0; i < gapCount; i++) {
+            gaps.add(in.readFloat(), in.readFloat(), in.readInt(), in.readInt());
+        }
+        if (in.read() != -1) {
+            throw new IOException("Trailing data in cache entry");
+        }
+        return new CachedAnalysis(blocks, gaps, totalPages);
+    }
+
+    private static int checkCount(int count, long entryBytes) throws IOException {
+        if (count < 0 || count > entryBytes) {
+            throw new IOException("Corrupt cache entry");
+        }
+        return count;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Left for the next eviction pass.
+        }
+    }
+}
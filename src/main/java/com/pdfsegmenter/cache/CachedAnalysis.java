@@ -0,0 +1,31 @@
+package com.pdfsegmenter.cache;
+
+import com.pdfsegmenter.model.TextBlock;
+import com.pdfsegmenter.model.WhitespaceGap;
+
+import java.util.List;
+
+// The numCuts-independent part of an analysis: everything needed to pick cut points again.
+public class CachedAnalysis {
+    private final List<TextBlock> textBlocks;
+    private final List<WhitespaceGap> gaps;
+    private final int totalPages;
+
+    public CachedAnalysis(List<TextBlock> textBlocks, List<WhitespaceGap> gaps, int totalPages) {
+        this.textBlocks = textBlocks;
+        this.gaps = gaps;
+        this.totalPages = totalPages;
+    }
+
+    public List<TextBlock> getTextBlocks() {
+        return textBlocks;
+    }
+
+    public List<WhitespaceGap> getGaps() {
+        return gaps;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+}
@@ -0,0 +1,150 @@
+package com.pdfsegmenter.index;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.model.CutPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.pdfsegmenter.index.LayoutIndexFormat.*;
+
+// A read-only view over a mapped layout index. Opening reads only the header; every accessor is an
+// absolute read from the mapping, so heap use does not depend on document size. Instances are safe to
+// share between threads. The mapping is released by the garbage collector once the index is unreachable.
+public class LayoutIndex {
+    private final MappedByteBuffer buffer;
+    private final int totalPages;
+    private final int blockCount;
+    private final int gapCount;
+    private final int pageTableOffset;
+    private final int blockOffset;
+    private final int gapOffset;
+    private final int rankOffset;
+
+    private LayoutIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a layout index");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported layout index version " + version + ", expected " + VERSION);
+        }
+        this.totalPages = buffer.getInt(8);
+        this.blockCount = buffer.getInt(12);
+        this.gapCount = buffer.getInt(16);
+        this.pageTableOffset = offset(20);
+        this.blockOffset = offset(28);
+        this.gapOffset = offset(36);
+        this.rankOffset = offset(44);
+        if (totalPages < 0 || blockCount < 0 || gapCount < 0
+                || pageTableOffset + (long) (totalPages + 1) * VALUE_BYTES > blockOffset
+                || blockOffset + 3L * blockCount * VALUE_BYTES > gapOffset
+                || gapOffset + 4L * gapCount * VALUE_BYTES > rankOffset
+                || rankOffset + (long) gapCount * VALUE_BYTES > buffer.capacity()) {
+            throw new IOException("Truncated or corrupt layout index");
+        }
+    }
+
+    public static LayoutIndex open(File indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Layout index is larger than 2 GB: " + indexFile);
+            }
+            // The mapping stays valid after the channel is closed.
+            return new LayoutIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getTotalPages() { return totalPages; }
+    public int getBlockCount() { return blockCount; }
+    public int getGapCount() { return gapCount; }
+
+    public int firstBlockOfPage(int page) {
+        return buffer.getInt(pageTableOffset + checkIndex(page, totalPages + 1) * VALUE_BYTES);
+    }
+
+    public int blockCountOfPage(int page) {
+        checkIndex(page, totalPages);
+        return firstBlockOfPage(page + 1) - firstBlockOfPage(page);
+    }
+
+    public float blockStartY(int block) {
+        return buffer.getFloat(column(blockOffset, blockCount, 0, block));
+    }
+
+    public float blockEndY(int block) {
+        return buffer.getFloat(column(blockOffset, blockCount, 1, block));
+    }
+
+    public int blockPage(int block) {
+        return buffer.getInt(column(blockOffset, blockCount, 2, block));
+    }
+
+    public float gapSize(int gap) {
+        return buffer.getFloat(column(gapOffset, gapCount, 0, gap));
+    }
+
+    public float gapY(int gap) {
+        return buffer.getFloat(column(gapOffset, gapCount, 1, gap));
+    }
+
+    public int gapPage(int gap) {
+        return buffer.getInt(column(gapOffset, gapCount, 2, gap));
+    }
+
+    public int gapBlockBefore(int gap) {
+        return buffer.getInt(column(gapOffset, gapCount, 3, gap));
+    }
+
+    // Index of the gap with the given rank; rank 0 is the largest gap.
+    public int rankedGap(int rank) {
+        return buffer.getInt(rankOffset + checkIndex(rank, gapCount) * VALUE_BYTES);
+    }
+
+    // The same cut points PDFAnalyzer.determineCutPoints picks from the indexed gaps, in document order.
+    public List<CutPoint> cutPoints(int numCuts) {
+        if (numCuts <= 0 || gapCount == 0) {
+            return Collections.emptyList();
+        }
+        int actualCuts = Math.min(numCuts, gapCount);
+        List<CutPoint> cutPoints = new ArrayList<>(actualCuts);
+        for (int rank = 0; rank < actualCuts; rank++) {
+            int gap = rankedGap(rank);
+            cutPoints.add(new CutPoint(gapPage(gap), gapY(gap), gapBlockBefore(gap), gapSize(gap)));
+        }
+        Collections.sort(cutPoints);
+        return cutPoints;
+    }
+
+    // Enough for PDFSegmenter.writeSegments to re-cut the source document without analyzing it again.
+    public PDFAnalyzer.AnalysisResult toAnalysisResult(int numCuts) {
+        return new PDFAnalyzer.AnalysisResult(Collections.emptyList(), Collections.emptyList(),
+                cutPoints(numCuts), totalPages, blockCount);
+    }
+
+    private int column(int sectionOffset, int rows, int column, int row) {
+        return sectionOffset + (column * rows + checkIndex(row, rows)) * VALUE_BYTES;
+    }
+
+    private int offset(int headerPosition) throws IOException {
+        long value = buffer.getLong(headerPosition);
+        if (value < HEADER_BYTES || value > buffer.capacity()) {
+            throw new IOException("Truncated or corrupt layout index");
+        }
+        return (int) value;
+    }
+
+    private static int checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,21 @@
+package com.pdfsegmenter.index;
+
+// Layout of a .layout sidecar, all values big-endian:
+//
+//   header   magic, version, totalPages, blockCount, gapCount (ints), then the byte offsets of the
+//            page table, block columns, gap columns and rank table (longs); HEADER_BYTES in total
+//   pages    int firstBlock[totalPages + 1]; blocks of page p are firstBlock[p] until firstBlock[p + 1]
+//   blocks   float startY[blockCount], float endY[blockCount], int page[blockCount]
+//   gaps     float size[gapCount], float y[gapCount], int page[gapCount], int blockBefore[gapCount]
+//   ranks    int gap[gapCount]; gap indices, largest first, equal sizes in document order
+//
+// Every value is four bytes wide, so a column entry is found by offset arithmetic alone.
+final class LayoutIndexFormat {
+    static final int MAGIC = 0x50534c49;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5 * Integer.BYTES + 4 * Long.BYTES;
+    static final int VALUE_BYTES = 4;
+
+    private LayoutIndexFormat() {
+    }
+}
@@ -0,0 +1,121 @@
+package com.pdfsegmenter.index;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.model.GapColumns;
+import com.pdfsegmenter.model.TextBlock;
+import com.pdfsegmenter.model.TextBlockColumns;
+import com.pdfsegmenter.model.WhitespaceGap;
+import com.pdfsegmenter.util.SortKeys;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.pdfsegmenter.index.LayoutIndexFormat.*;
+
+public final class LayoutIndexWriter {
+    private LayoutIndexWriter() {
+    }
+
+    public static void write(PDFAnalyzer.AnalysisResult analysis, File indexFile) throws IOException {
+        if (analysis.getTextBlocks().size() != analysis.getBlockCount()) {
+            throw new IllegalArgumentException("Analysis keeps no blocks or gaps (streaming mode); cannot write a layout index");
+        }
+        write(analysis.getTextBlocks(), analysis.getGaps(), analysis.getTotalPages(), indexFile);
+    }
+
+    // Blocks must be in document order, as PDFAnalyzer produces them.
+    public static void write(List<TextBlock> blockList, List<WhitespaceGap> gapList, int totalPages, File indexFile)
+            throws IOException {
+        TextBlockColumns blocks = TextBlockColumns.of(blockList);
+        GapColumns gaps = GapColumns.of(gapList);
+        int blockCount = blocks.size();
+        int gapCount = gaps.size();
+        long pageTableOffset = HEADER_BYTES;
+        long blockOffset = pageTableOffset + (long) (totalPages + 1) * VALUE_BYTES;
+        long gapOffset = blockOffset + 3L * blockCount * VALUE_BYTES;
+        long rankOffset = gapOffset + 4L * gapCount * VALUE_BYTES;
+        long totalBytes = rankOffset + (long) gapCount * VALUE_BYTES;
+        if (totalBytes > Integer.MAX_VALUE) {
+            throw new IOException("Layout index would exceed 2 GB: " + totalBytes + " bytes");
+        }
+
+        // Written beside the target and moved into place, so a reader never maps a half-written file.
+        Path target = indexFile.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), indexFile.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(totalPages);
+                out.writeInt(blockCount);
+                out.writeInt(gapCount);
+                out.writeLong(pageTableOffset);
+                out.writeLong(blockOffset);
+                out.writeLong(gapOffset);
+                out.writeLong(rankOffset);
+
+                writePageTable(out, blocks, totalPages);
+                for (int i = 0; i < blockCount; i++) {
+                    out.writeFloat(blocks.getStartY(i));
+                }
+                for (int i = 0; i < blockCount; i++) {
+                    out.writeFloat(blocks.getEndY(i));
+                }
+                for (int i = 0; i < blockCount; i++) {
+                    out.writeInt(blocks.getPageNumber(i));
+                }
+
+                for (int i = 0; i < gapCount; i++) {
+                    out.writeFloat(gaps.getGapSize(i));
+                }
+                for (int i = 0; i < gapCount; i++) {
+                    out.writeFloat(gaps.getYPosition(i));
+                }
+                for (int i = 0; i < gapCount; i++) {
+                    out.writeInt(gaps.getPageNumber(i));
+                }
+                for (int i = 0; i < gapCount; i++) {
+                    out.writeInt(gaps.getBlockIndexBefore(i));
+                }
+
+                for (int gap : rankGaps(gaps)) {
+                    out.writeInt(gap);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writePageTable(DataOutputStream out, TextBlockColumns blocks, int totalPages) throws IOException {
+        int block = 0;
+        for (int page = 0; page <= totalPages; page++) {
+            while (block < blocks.size() && blocks.getPageNumber(block) < page) {
+                block++;
+            }
+            out.writeInt(block);
+        }
+    }
+
+    // Same order as PDFAnalyzer's cut selection: largest first, earlier gap first on ties.
+    private static int[] rankGaps(GapColumns gaps) {
+        long[] keys = new long[gaps.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = SortKeys.descending(gaps.getGapSize(i), i);
+        }
+        Arrays.sort(keys);
+        int[] ranked = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ranked[i] = SortKeys.index(keys[i]);
+        }
+        return ranked;
+    }
+}
@@ -0,0 +1,114 @@
+package com.pdfsegmenter.io;
+
+import com.pdfsegmenter.metrics.SegmentationEvents;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DocumentLoader {
+    private final MemoryPolicy memoryPolicy;
+    private final boolean memoryMapped;
+    private final int regionSize;
+    // Open mappings by canonical path; handles on the same file, e.g. extraction shards and segment writers, share one.
+    private final Map<String, MappedFile> mappings = new HashMap<>();
+
+    public DocumentLoader() {
+        this(MemoryPolicy.mainMemoryOnly());
+    }
+
+    public DocumentLoader(MemoryPolicy memoryPolicy) {
+        this(memoryPolicy, false);
+    }
+
+    // With memoryMapped, input files are parsed from a read-only mapping instead of PDFBox's buffered file reader.
+    // The memory policy still decides where decoded stream data and new documents are kept.
+    public DocumentLoader(MemoryPolicy memoryPolicy, boolean memoryMapped) {
+        this(memoryPolicy, memoryMapped, MappedFile.DEFAULT_REGION_SIZE);
+    }
+
+    DocumentLoader(MemoryPolicy memoryPolicy, boolean memoryMapped, int regionSize) {
+        this.memoryPolicy = memoryPolicy;
+        this.memoryMapped = memoryMapped;
+        this.regionSize = regionSize;
+    }
+
+    public MemoryPolicy getMemoryPolicy() {
+        return memoryPolicy;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public PDDocument load(File file) throws IOException {
+        SegmentationEvents.DocumentLoad event = new SegmentationEvents.DocumentLoad();
+        event.begin();
+        PDDocument document = memoryMapped ? loadMapped(file)
+                : PDDocument.load(file, memoryPolicy.toMemoryUsageSetting());
+        if (event.shouldCommit()) {
+            event.documentPath = SegmentationEvents.path(file);
+            event.pages = document.getNumberOfPages();
+            event.bytesRead = file.length();
+            event.memoryMapped = memoryMapped;
+            event.commit();
+        }
+        return document;
+    }
+
+    private PDDocument loadMapped(File file) throws IOException {
+        // Same steps as PDDocument.load(File, MemoryUsageSetting), over a mapped source; closing the
+        // document closes the reader, which releases its share of the mapping.
+        MappedFileReader source = openMapped(file);
+        ScratchFile scratchFile = new ScratchFile(memoryPolicy.toMemoryUsageSetting());
+        try {
+            PDFParser parser = new PDFParser(source, "", null, null, scratchFile);
+            parser.parse();
+            return parser.getPDDocument();
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(scratchFile);
+            source.close();
+            throw e;
+        }
+    }
+
+    public PDDocument createDocument() {
+        return new PDDocument(memoryPolicy.toMemoryUsageSetting());
+    }
+
+    MappedFileReader openMapped(File file) throws IOException {
+        MappedFile mapping;
+        synchronized (mappings) {
+            String key = file.getCanonicalPath();
+            mapping = mappings.get(key);
+            if (mapping == null || !mapping.isCurrent(file)) {
+                mapping = MappedFile.map(file, regionSize);
+                mappings.put(key, mapping);
+            }
+            mapping.retain();
+        }
+        MappedFile shared = mapping;
+        return new MappedFileReader(shared, () -> release(shared));
+    }
+
+    // Number of files currently mapped for open documents.
+    int mappedFileCount() {
+        synchronized (mappings) {
+            return mappings.size();
+        }
+    }
+
+    private void release(MappedFile mapping) {
+        synchronized (mappings) {
+            // The buffers are unmapped by the garbage collector once no reader refers to them.
+            if (mapping.release() && mappings.get(mapping.getKey()) == mapping) {
+                mappings.remove(mapping.getKey());
+            }
+        }
+    }
+}
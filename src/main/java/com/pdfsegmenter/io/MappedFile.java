@@ -0,0 +1,76 @@
+package com.pdfsegmenter.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Read-only mapping of a whole file, split into regions because one MappedByteBuffer cannot exceed 2 GB.
+// Readers get their own buffer views, so any number of them can share a mapping without copying.
+final class MappedFile {
+    static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+    private final String key;
+    private final long length;
+    private final long lastModified;
+    private final ByteBuffer[] regions;
+    private final int regionSize;
+    private int references;
+
+    private MappedFile(String key, long length, long lastModified, ByteBuffer[] regions, int regionSize) {
+        this.key = key;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.regions = regions;
+        this.regionSize = regionSize;
+    }
+
+    static MappedFile map(File file, int regionSize) throws IOException {
+        long lastModified = file.lastModified();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer[] regions = new ByteBuffer[(int) ((length + regionSize - 1) / regionSize)];
+            for (int i = 0; i < regions.length; i++) {
+                long offset = (long) i * regionSize;
+                // The mapping stays valid after the channel is closed.
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(regionSize, length - offset));
+            }
+            return new MappedFile(file.getCanonicalPath(), length, lastModified, regions, regionSize);
+        }
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    long length() {
+        return length;
+    }
+
+    int regionSize() {
+        return regionSize;
+    }
+
+    // False once the file has been replaced or resized, so that new readers map the new content.
+    boolean isCurrent(File file) {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    ByteBuffer[] views() {
+        ByteBuffer[] views = new ByteBuffer[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            views[i] = regions[i].duplicate();
+        }
+        return views;
+    }
+
+    // Reference counting is guarded by the owning DocumentLoader.
+    void retain() {
+        references++;
+    }
+
+    boolean release() {
+        return --references == 0;
+    }
+}
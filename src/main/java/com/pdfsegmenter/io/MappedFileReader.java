@@ -0,0 +1,145 @@
+package com.pdfsegmenter.io;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// RandomAccessRead over a MappedFile. Reads go straight to the mapped pages; unlike
+// RandomAccessBufferedFileInputStream there is no heap page cache to fill and no seek on the file descriptor.
+// Like the other PDFBox sources, a reader is used by one thread at a time.
+final class MappedFileReader implements RandomAccessRead {
+    private final MappedFile file;
+    private final ByteBuffer[] regions;
+    private final long length;
+    private final int regionSize;
+    private final Runnable onClose;
+    private long position;
+    private boolean closed;
+
+    MappedFileReader(MappedFile file, Runnable onClose) {
+        this.file = file;
+        this.regions = file.views();
+        this.length = file.length();
+        this.regionSize = file.regionSize();
+        this.onClose = onClose;
+    }
+
+    MappedFile getFile() {
+        return file;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (position >= length) {
+            return -1;
+        }
+        int b = regions[(int) (position / regionSize)].get((int) (position % regionSize)) & 0xff;
+        position++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int len) throws IOException {
+        checkClosed();
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+        int total = (int) Math.min(len, length - position);
+        int done = 0;
+        while (done < total) {
+            ByteBuffer region = regions[(int) (position / regionSize)];
+            region.position((int) (position % regionSize));
+            int n = Math.min(total - done, region.remaining());
+            region.get(b, offset + done, n);
+            done += n;
+            position += n;
+        }
+        return total;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long newPosition) throws IOException {
+        checkClosed();
+        if (newPosition < 0) {
+            throw new IOException("Invalid position " + newPosition);
+        }
+        position = newPosition;
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int b = read();
+        if (b != -1) {
+            position--;
+        }
+        return b;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int len) throws IOException {
+        byte[] bytes = new byte[len];
+        if (len > 0 && read(bytes, 0, len) < len) {
+            throw new EOFException("Premature end of file");
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return position >= length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.min(Math.max(length - position, 0), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            onClose.run();
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("Mapped reader already closed");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.pdfsegmenter.io;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+
+import java.io.File;
+import java.util.Locale;
+
+public class MemoryPolicy {
+    public enum Mode { MAIN_MEMORY, MIXED, TEMP_FILE }
+
+    private final Mode mode;
+    private final long maxMainMemoryBytes;
+    private final File tempDir;
+
+    private MemoryPolicy(Mode mode, long maxMainMemoryBytes, File tempDir) {
+        this.mode = mode;
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+        this.tempDir = tempDir;
+    }
+
+    public static MemoryPolicy mainMemoryOnly() {
+        return new MemoryPolicy(Mode.MAIN_MEMORY, -1, null);
+    }
+
+    public static MemoryPolicy mixed(long maxMainMemoryBytes) {
+        if (maxMainMemoryBytes < 0) {
+            throw new IllegalArgumentException("Main memory limit must not be negative");
+        }
+        return new MemoryPolicy(Mode.MIXED, maxMainMemoryBytes, null);
+    }
+
+    public static MemoryPolicy tempFileOnly() {
+        return new MemoryPolicy(Mode.TEMP_FILE, 0, null);
+    }
+
+    public static MemoryPolicy parse(String spec) {
+        String value = spec.trim().toLowerCase(Locale.ROOT);
+        if (value.equals("main")) {
+            return mainMemoryOnly();
+        }
+        if (value.equals("temp")) {
+            return tempFileOnly();
+        }
+        if (value.startsWith("mixed:")) {
+            return mixed(parseSize(value.substring("mixed:".length())));
+        }
+        throw new IllegalArgumentException("Memory policy must be main, temp or mixed:<size>, got: " + spec);
+    }
+
+    public static long parseSize(String spec) {
+        String size = spec.trim().toLowerCase(Locale.ROOT);
+        long multiplier = 1;
+        String digits = size;
+        if (size.endsWith("k")) {
+            multiplier = 1L << 10;
+        } else if (size.endsWith("m")) {
+            multiplier = 1L << 20;
+        } else if (size.endsWith("g")) {
+            multiplier = 1L << 30;
+        }
+        if (multiplier != 1) {
+            digits = size.substring(0, size.length() - 1);
+        }
+        try {
+            return Math.multiplyExact(Long.parseLong(digits), multiplier);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid size: " + spec);
+        }
+    }
+
+    public MemoryPolicy withTempDir(File tempDir) {
+        return new MemoryPolicy(mode, maxMainMemoryBytes, tempDir);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getMaxMainMemoryBytes() {
+        return maxMainMemoryBytes;
+    }
+
+    public File getTempDir() {
+        return tempDir;
+    }
+
+    public MemoryUsageSetting toMemoryUsageSetting() {
+        MemoryUsageSetting setting;
+        switch (mode) {
+            case MIXED:
+                setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+                break;
+            case TEMP_FILE:
+                setting = MemoryUsageSetting.setupTempFileOnly();
+                break;
+            default:
+                setting = MemoryUsageSetting.setupMainMemoryOnly();
+                break;
+        }
+        return tempDir != null ? setting.setTempDir(tempDir) : setting;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.MIXED ? "MemoryPolicy[MIXED, max=" + maxMainMemoryBytes + "]" : "MemoryPolicy[" + mode + "]";
+    }
+}
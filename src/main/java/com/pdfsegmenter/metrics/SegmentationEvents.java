@@ -0,0 +1,114 @@
+package com.pdfsegmenter.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.File;
+
+// JDK Flight Recorder events for the stages that SegmentationMetrics times. Callers create an event, call begin()
+// before the work and fill in the fields only when shouldCommit() is true, so with no recording running an event
+// costs a flag check. Stack traces are off: the event name already says where the time went.
+public final class SegmentationEvents {
+    private static final String CATEGORY = "PDF Segmenter";
+
+    private SegmentationEvents() {
+    }
+
+    // Path recorded for documents that were opened from a file; null for documents handed in already loaded.
+    public static String path(File file) {
+        return file == null ? null : file.getAbsolutePath();
+    }
+
+    @StackTrace(false)
+    abstract static class DocumentEvent extends Event {
+        @Label("Document")
+        @Description("Path of the source PDF, when it was opened from a file")
+        public String documentPath;
+    }
+
+    @Name("pdfsegmenter.DocumentLoad")
+    @Label("Document Load")
+    @Category({CATEGORY, "Input"})
+    public static final class DocumentLoad extends DocumentEvent {
+        @Label("Pages")
+        public int pages;
+
+        @Label("Bytes Read")
+        @DataAmount
+        public long bytesRead;
+
+        @Label("Memory Mapped")
+        public boolean memoryMapped;
+    }
+
+    @Name("pdfsegmenter.PageExtraction")
+    @Label("Page Extraction")
+    @Category({CATEGORY, "Analysis"})
+    public static final class PageExtraction extends DocumentEvent {
+        @Label("Page Index")
+        public int pageIndex;
+
+        @Label("Glyphs")
+        public int glyphCount;
+    }
+
+    @Name("pdfsegmenter.LineGrouping")
+    @Label("Line Grouping")
+    @Category({CATEGORY, "Analysis"})
+    public static final class LineGrouping extends DocumentEvent {
+        @Label("Page Index")
+        public int pageIndex;
+
+        @Label("Glyphs")
+        public int glyphCount;
+
+        @Label("Blocks")
+        public int blockCount;
+    }
+
+    // One per document, or one per page when gaps are measured while streaming.
+    @Name("pdfsegmenter.GapFinding")
+    @Label("Gap Finding")
+    @Category({CATEGORY, "Analysis"})
+    public static final class GapFinding extends DocumentEvent {
+        @Label("Blocks")
+        public int blockCount;
+
+        @Label("Gaps")
+        public int gapCount;
+    }
+
+    @Name("pdfsegmenter.CutSelection")
+    @Label("Cut Selection")
+    @Category({CATEGORY, "Analysis"})
+    public static final class CutSelection extends DocumentEvent {
+        @Label("Gaps")
+        public int gapCount;
+
+        @Label("Cuts")
+        public int cutCount;
+    }
+
+    @Name("pdfsegmenter.SegmentSave")
+    @Label("Segment Save")
+    @Category({CATEGORY, "Segmentation"})
+    public static final class SegmentSave extends DocumentEvent {
+        @Label("Segment Index")
+        public int segmentIndex;
+
+        @Label("Pages")
+        public int pages;
+
+        @Label("Segment File")
+        public String segmentPath;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytesWritten;
+    }
+}
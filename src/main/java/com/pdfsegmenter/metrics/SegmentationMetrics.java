@@ -0,0 +1,149 @@
+package com.pdfsegmenter.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Thread-safe: page grouping and segment writing record into the same instance from several threads,
+// so stage times are busy time summed over threads rather than wall time when those stages run in parallel.
+public class SegmentationMetrics {
+    public enum Stage {
+        LOAD("load"),
+        CACHE("cache"),
+        EXTRACT("extract"),
+        GROUP("group"),
+        GAPS("gaps"),
+        CUTS("cuts"),
+        BUILD("build"),
+        SAVE("save");
+
+        private final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    public enum Counter {
+        DOCUMENTS("documents", "Documents analyzed"),
+        FAILED_DOCUMENTS("failed_documents", "Documents that failed in any stage"),
+        PAGES("pages", "Pages in analyzed documents"),
+        GLYPHS("glyphs", "Glyphs extracted"),
+        BLOCKS("blocks", "Text blocks found"),
+        GAPS("gaps", "Whitespace gaps found"),
+        SEGMENTS("segments", "Segment files written"),
+        READ_BYTES("read_bytes", "Bytes of source documents read"),
+        WRITTEN_BYTES("written_bytes", "Bytes of segment files written"),
+        CACHE_HITS("cache_hits", "Analyses served from the analysis cache"),
+        CACHE_MISSES("cache_misses", "Analyses not found in the analysis cache"),
+        REJECTED_REQUESTS("rejected_requests", "Server requests turned away because the queue was full");
+
+        private final String key;
+        private final String description;
+
+        Counter(String key, String description) {
+            this.key = key;
+            this.description = description;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final String PROMETHEUS_PREFIX = "pdfsegmenter_";
+
+    private final LongAdder[] stageNanos = newAdders(Stage.values().length);
+    private final LongAdder[] counters = newAdders(Counter.values().length);
+
+    public void addTime(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()].add(nanos);
+    }
+
+    // Records the time since startNanos (a System.nanoTime() value) and returns the current time,
+    // so consecutive stages can be timed with one clock read each.
+    public long recordSince(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        addTime(stage, now - startNanos);
+        return now;
+    }
+
+    public long getNanos(Stage stage) {
+        return stageNanos[stage.ordinal()].sum();
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public void add(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    public long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    public void merge(SegmentationMetrics other) {
+        for (Stage stage : Stage.values()) {
+            addTime(stage, other.getNanos(stage));
+        }
+        for (Counter counter : Counter.values()) {
+            add(counter, other.get(counter));
+        }
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        for (Counter counter : Counter.values()) {
+            sb.append('"').append(counter.key).append("\":").append(get(counter)).append(',');
+        }
+        sb.append("\"stage_nanos\":{");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(stage.key).append("\":").append(getNanos(stage));
+        }
+        return sb.append("}}").toString();
+    }
+
+    // Prometheus text exposition format, suitable for a node_exporter textfile collector.
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        String stageMetric = PROMETHEUS_PREFIX + "stage_seconds_total";
+        sb.append("# HELP ").append(stageMetric).append(" Time spent in each stage, summed over threads.\n");
+        sb.append("# TYPE ").append(stageMetric).append(" counter\n");
+        for (Stage stage : Stage.values()) {
+            sb.append(stageMetric).append("{stage=\"").append(stage.key).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.9f", getNanos(stage) / 1e9)).append('\n');
+        }
+        for (Counter counter : Counter.values()) {
+            String metric = PROMETHEUS_PREFIX + counter.key + "_total";
+            sb.append("# HELP ").append(metric).append(' ').append(counter.description).append(".\n");
+            sb.append("# TYPE ").append(metric).append(" counter\n");
+            sb.append(metric).append(' ').append(get(counter)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentationMetrics" + toJson();
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,42 @@
+package com.pdfsegmenter.model;
+
+// Append-only column stored in fixed-size chunks, so growing never copies the values already stored. The first
+// chunk starts small and doubles up to the chunk size, so short columns stay small too. Subclasses hold the
+// primitive chunk arrays; this class decides when a chunk is allocated or resized.
+abstract class ChunkedColumn {
+    static final int CHUNK_BITS = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private int capacity = INITIAL_CAPACITY;
+
+    // Makes room for one more value and returns its index.
+    final int reserve() {
+        int index = size;
+        if (index == capacity) {
+            int chunk = chunkOf(index);
+            int length = chunk == 0 ? Math.min(index * 2, CHUNK_SIZE) : CHUNK_SIZE;
+            resizeChunk(chunk, length);
+            capacity = chunk == 0 ? length : capacity + CHUNK_SIZE;
+        }
+        size++;
+        return index;
+    }
+
+    // Allocates the chunk, or grows it to length keeping its values; chunk may be one past the last chunk.
+    abstract void resizeChunk(int chunk, int length);
+
+    final int size() {
+        return size;
+    }
+
+    static int chunkOf(int index) {
+        return index >>> CHUNK_BITS;
+    }
+
+    static int offsetOf(int index) {
+        return index & CHUNK_MASK;
+    }
+}
@@ -4,11 +4,17 @@ public class CutPoint implements Comparable<CutPoint> {
     private final int pageNumber;
     private final float yPosition;
     private final int blockIndex;
+    private final float gapSize;
 
     public CutPoint(int pageNumber, float yPosition, int blockIndex) {
+        this(pageNumber, yPosition, blockIndex, 0f);
+    }
+
+    public CutPoint(int pageNumber, float yPosition, int blockIndex, float gapSize) {
         this.pageNumber = pageNumber;
         this.yPosition = yPosition;
         this.blockIndex = blockIndex;
+        this.gapSize = gapSize;
     }
 
     public int getPageNumber() {
@@ -23,6 +29,11 @@ public class CutPoint implements Comparable<CutPoint> {
         return blockIndex;
     }
 
+    // Height of the whitespace below yPosition; it runs past the page bottom when the gap spans a page break.
+    public float getGapSize() {
+        return gapSize;
+    }
+
     @Override
     public int compareTo(CutPoint other) {
         int pageCompare = Integer.compare(this.pageNumber, other.pageNumber);
@@ -0,0 +1,24 @@
+package com.pdfsegmenter.model;
+
+import java.util.Arrays;
+
+final class FloatColumn extends ChunkedColumn {
+    private float[][] chunks = {new float[INITIAL_CAPACITY]};
+
+    void add(float value) {
+        int index = reserve();
+        chunks[chunkOf(index)][offsetOf(index)] = value;
+    }
+
+    float get(int index) {
+        return chunks[chunkOf(index)][offsetOf(index)];
+    }
+
+    @Override
+    void resizeChunk(int chunk, int length) {
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        chunks[chunk] = chunks[chunk] == null ? new float[length] : Arrays.copyOf(chunks[chunk], length);
+    }
+}
@@ -0,0 +1,64 @@
+package com.pdfsegmenter.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// Whitespace gaps stored as four primitive columns; get(i) builds a WhitespaceGap on demand.
+public final class GapColumns extends AbstractList<WhitespaceGap> implements RandomAccess {
+    private final FloatColumn gapSize = new FloatColumn();
+    private final FloatColumn yPosition = new FloatColumn();
+    private final IntColumn pageNumber = new IntColumn();
+    private final IntColumn blockIndexBefore = new IntColumn();
+
+    // Returns gaps itself when it is already columnar.
+    public static GapColumns of(List<WhitespaceGap> gaps) {
+        if (gaps instanceof GapColumns) {
+            return (GapColumns) gaps;
+        }
+        GapColumns columns = new GapColumns();
+        columns.addAll(gaps);
+        return columns;
+    }
+
+    @Override
+    public boolean add(WhitespaceGap gap) {
+        add(gap.getGapSize(), gap.getYPosition(), gap.getPageNumber(), gap.getBlockIndexBefore());
+        return true;
+    }
+
+    public void add(float size, float y, int page, int blockBefore) {
+        gapSize.add(size);
+        yPosition.add(y);
+        pageNumber.add(page);
+        blockIndexBefore.add(blockBefore);
+        modCount++;
+    }
+
+    public float getGapSize(int index) {
+        return gapSize.get(Objects.checkIndex(index, size()));
+    }
+
+    public float getYPosition(int index) {
+        return yPosition.get(Objects.checkIndex(index, size()));
+    }
+
+    public int getPageNumber(int index) {
+        return pageNumber.get(Objects.checkIndex(index, size()));
+    }
+
+    public int getBlockIndexBefore(int index) {
+        return blockIndexBefore.get(Objects.checkIndex(index, size()));
+    }
+
+    @Override
+    public WhitespaceGap get(int index) {
+        return new WhitespaceGap(getGapSize(index), getYPosition(index), getPageNumber(index), getBlockIndexBefore(index));
+    }
+
+    @Override
+    public int size() {
+        return gapSize.size();
+    }
+}
@@ -0,0 +1,24 @@
+package com.pdfsegmenter.model;
+
+import java.util.Arrays;
+
+final class IntColumn extends ChunkedColumn {
+    private int[][] chunks = {new int[INITIAL_CAPACITY]};
+
+    void add(int value) {
+        int index = reserve();
+        chunks[chunkOf(index)][offsetOf(index)] = value;
+    }
+
+    int get(int index) {
+        return chunks[chunkOf(index)][offsetOf(index)];
+    }
+
+    @Override
+    void resizeChunk(int chunk, int length) {
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        chunks[chunk] = chunks[chunk] == null ? new int[length] : Arrays.copyOf(chunks[chunk], length);
+    }
+}
@@ -1,15 +1,28 @@
 package com.pdfsegmenter.model;
 
+import java.util.function.Supplier;
+
 public class TextBlock {
     private final float startY;
     private final float endY;
     private final int pageNumber;
-    private final String content;
+    private final Supplier<String> contentSource;
+    private String content;
 
     public TextBlock(float startY, float endY, int pageNumber, String content) {
+        this(startY, endY, pageNumber, null, content);
+    }
+
+    // The content is built on the first getContent() call and kept from then on.
+    public TextBlock(float startY, float endY, int pageNumber, Supplier<String> contentSource) {
+        this(startY, endY, pageNumber, contentSource, null);
+    }
+
+    private TextBlock(float startY, float endY, int pageNumber, Supplier<String> contentSource, String content) {
         this.startY = startY;
         this.endY = endY;
         this.pageNumber = pageNumber;
+        this.contentSource = contentSource;
         this.content = content;
     }
 
@@ -26,7 +39,18 @@ public class TextBlock {
     }
 
     public String getContent() {
-        return content;
+        // Racy but safe, like String.hashCode: a String is immutable, so at worst two threads both build it.
+        String text = content;
+        if (text == null && contentSource != null) {
+            text = contentSource.get();
+            content = text;
+        }
+        return text;
+    }
+
+    // True for a lazy block whose content has not been built yet; lets TextBlockColumns keep it lazy.
+    boolean isContentPending() {
+        return content == null && contentSource != null;
     }
 
     public float getHeight() {
@@ -0,0 +1,79 @@
+package com.pdfsegmenter.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// Text blocks stored column by column instead of one object per block. get(i) builds a TextBlock on demand;
+// code that scans geometry should use the indexed accessors, which read the primitive columns directly.
+public final class TextBlockColumns extends AbstractList<TextBlock> implements RandomAccess {
+    private final FloatColumn startY = new FloatColumn();
+    private final FloatColumn endY = new FloatColumn();
+    private final IntColumn pageNumber = new IntColumn();
+    // A String, or a lazy block whose content had not been built when it was added; the block builds and keeps
+    // its content itself.
+    private final List<Object> content = new ArrayList<>();
+
+    // Returns blocks itself when it is already columnar.
+    public static TextBlockColumns of(List<TextBlock> blocks) {
+        if (blocks instanceof TextBlockColumns) {
+            return (TextBlockColumns) blocks;
+        }
+        TextBlockColumns columns = new TextBlockColumns();
+        columns.addAll(blocks);
+        return columns;
+    }
+
+    // Keeps a lazy block lazy: its content is built on the first getContent call, as on the block itself.
+    @Override
+    public boolean add(TextBlock block) {
+        addRow(block.getStartY(), block.getEndY(), block.getPageNumber(),
+                block.isContentPending() ? block : block.getContent());
+        return true;
+    }
+
+    public void add(float blockStartY, float blockEndY, int blockPageNumber, String blockContent) {
+        addRow(blockStartY, blockEndY, blockPageNumber, blockContent);
+    }
+
+    private void addRow(float blockStartY, float blockEndY, int blockPageNumber, Object blockContent) {
+        startY.add(blockStartY);
+        endY.add(blockEndY);
+        pageNumber.add(blockPageNumber);
+        content.add(blockContent);
+        modCount++;
+    }
+
+    public float getStartY(int index) {
+        return startY.get(Objects.checkIndex(index, size()));
+    }
+
+    public float getEndY(int index) {
+        return endY.get(Objects.checkIndex(index, size()));
+    }
+
+    public int getPageNumber(int index) {
+        return pageNumber.get(Objects.checkIndex(index, size()));
+    }
+
+    public String getContent(int index) {
+        Object value = content.get(index);
+        return value instanceof TextBlock ? ((TextBlock) value).getContent() : (String) value;
+    }
+
+    @Override
+    public TextBlock get(int index) {
+        Object value = content.get(index);
+        if (value instanceof TextBlock) {
+            return (TextBlock) value;
+        }
+        return new TextBlock(startY.get(index), endY.get(index), pageNumber.get(index), (String) value);
+    }
+
+    @Override
+    public int size() {
+        return content.size();
+    }
+}
@@ -1,42 +1,180 @@
 package com.pdfsegmenter.segmenter;
 
 import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.io.DocumentLoader;
+import com.pdfsegmenter.io.MemoryPolicy;
+import com.pdfsegmenter.metrics.SegmentationEvents;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
 import com.pdfsegmenter.model.CutPoint;
-import com.pdfsegmenter.model.TextBlock;
-import org.apache.pdfbox.multipdf.Splitter;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 public class PDFSegmenter {
     private final PDFAnalyzer analyzer;
+    private final DocumentLoader loader;
+    private int writerThreads = 1;
+    private boolean streamingAnalysis;
+    private boolean cropToCuts;
 
     public PDFSegmenter() {
-        this.analyzer = new PDFAnalyzer();
+        this(new PDFAnalyzer());
+    }
+
+    public PDFSegmenter(PDFAnalyzer analyzer) {
+        this(analyzer, new DocumentLoader());
+    }
+
+    public PDFSegmenter(PDFAnalyzer analyzer, MemoryPolicy memoryPolicy) {
+        this(analyzer, new DocumentLoader(memoryPolicy));
+    }
+
+    public PDFSegmenter(PDFAnalyzer analyzer, DocumentLoader loader) {
+        this.analyzer = analyzer;
+        this.loader = loader;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException("Number of writer threads must be at least 1");
+        }
+        this.writerThreads = writerThreads;
+    }
+
+    public DocumentLoader getLoader() {
+        return loader;
+    }
+
+    public boolean isStreamingAnalysis() {
+        return streamingAnalysis;
+    }
+
+    public void setStreamingAnalysis(boolean streamingAnalysis) {
+        this.streamingAnalysis = streamingAnalysis;
+    }
+
+    public boolean isCropToCuts() {
+        return cropToCuts;
+    }
+
+    // When set, a page that holds a cut is split between the two segments by narrowing its MediaBox and
+    // CropBox to each segment's vertical range; the content stream itself is copied unchanged.
+    public void setCropToCuts(boolean cropToCuts) {
+        this.cropToCuts = cropToCuts;
     }
 
     public List<File> segment(File inputFile, int numCuts, File outputDir) throws IOException {
-        validateInputs(inputFile, numCuts, outputDir);
+        return segmentWithReport(inputFile, numCuts, outputDir).getSegments();
+    }
+
+    public SegmentationReport segmentWithReport(File inputFile, int numCuts, File outputDir) throws IOException {
+        validateInputs(inputFile, numCuts);
+        if (!outputDir.exists()) {
+            Files.createDirectories(outputDir.toPath());
+        }
+        
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        long start = System.nanoTime();
+        try (PDDocument sourceDoc = loader.load(inputFile)) {
+            metrics.recordSince(SegmentationMetrics.Stage.LOAD, start);
+            metrics.add(SegmentationMetrics.Counter.READ_BYTES, inputFile.length());
+            
+            PDFAnalyzer.AnalysisResult analysis = analyze(inputFile, sourceDoc, numCuts, metrics);
+            return new SegmentationReport(writeSegments(sourceDoc, inputFile, analysis, outputDir), analysis);
+        }
+    }
+
+    public SegmentationPlan plan(File inputFile, int numCuts) throws IOException {
+        return plan(inputFile, numCuts, new SegmentationMetrics());
+    }
+
+    // The analysis half of segment: cut points and segment ranges are worked out, but nothing is written.
+    public SegmentationPlan plan(File inputFile, int numCuts, SegmentationMetrics metrics) throws IOException {
+        validateInputs(inputFile, numCuts);
+        
+        long start = System.nanoTime();
+        try (PDDocument sourceDoc = loader.load(inputFile)) {
+            metrics.recordSince(SegmentationMetrics.Stage.LOAD, start);
+            metrics.add(SegmentationMetrics.Counter.READ_BYTES, inputFile.length());
+            
+            return createPlan(sourceDoc, inputFile, analyze(inputFile, sourceDoc, numCuts, metrics));
+        }
+    }
+
+    // sourceDoc must be the document loaded from inputFile.
+    public SegmentationPlan createPlan(PDDocument sourceDoc, File inputFile, PDFAnalyzer.AnalysisResult analysis) {
+        List<CutPoint> cutPoints = analysis.getCutPoints();
+        return new SegmentationPlan(inputFile, inputFile.length(), inputFile.lastModified(),
+                sourceDoc.getNumberOfPages(), analysis.getBlockCount(), cropToCuts, cutPoints,
+                calculateSegments(sourceDoc, cutPoints, analysis.getBlockCount(), cropToCuts));
+    }
+
+    public List<File> apply(SegmentationPlan plan, File outputDir) throws IOException {
+        return apply(plan, outputDir, new SegmentationMetrics());
+    }
+
+    // The write half of segment: writes the planned segments of the plan's source without running the analyzer.
+    // The plan's crop setting is used, not this segmenter's.
+    public List<File> apply(SegmentationPlan plan, File outputDir, SegmentationMetrics metrics) throws IOException {
+        File inputFile = plan.getSourceFile();
+        if (!plan.matchesSource()) {
+            throw new IOException("Source has changed since the plan was made: " + inputFile);
+        }
+        if (!outputDir.exists()) {
+            Files.createDirectories(outputDir.toPath());
+        }
+        if (plan.getCutPoints().isEmpty()) {
+            return copyAsIs(inputFile, plan.getTotalPages(), outputDir, metrics);
+        }
         
-        PDFAnalyzer.AnalysisResult analysis = analyzer.analyze(inputFile, numCuts);
+        long start = System.nanoTime();
+        try (PDDocument sourceDoc = loader.load(inputFile)) {
+            metrics.recordSince(SegmentationMetrics.Stage.LOAD, start);
+            metrics.add(SegmentationMetrics.Counter.READ_BYTES, inputFile.length());
+            if (sourceDoc.getNumberOfPages() != plan.getTotalPages()) {
+                throw new IOException("Plan is for " + plan.getTotalPages() + " pages but " + inputFile + " has "
+                        + sourceDoc.getNumberOfPages());
+            }
+            
+            return performSegmentation(sourceDoc, inputFile, plan.getSegments(), plan.isCropToCuts(), outputDir,
+                    metrics);
+        }
+    }
+
+    // sourceDoc must be the document loaded from inputFile; the analyzer's cache is keyed by the file.
+    public PDFAnalyzer.AnalysisResult analyze(File inputFile, PDDocument sourceDoc, int numCuts,
+                                              SegmentationMetrics metrics) throws IOException {
+        return streamingAnalysis
+                ? analyzer.analyzeStreaming(inputFile, sourceDoc, numCuts, metrics)
+                : analyzer.analyze(inputFile, sourceDoc, numCuts, metrics);
+    }
+
+    // sourceDoc must be the document loaded from inputFile; it is left open for the caller to close.
+    // Write timings and byte counts are added to the analysis metrics.
+    public List<File> writeSegments(PDDocument sourceDoc, File inputFile, PDFAnalyzer.AnalysisResult analysis,
+                                    File outputDir) throws IOException {
+        if (!outputDir.exists()) {
+            Files.createDirectories(outputDir.toPath());
+        }
         List<CutPoint> cutPoints = analysis.getCutPoints();
         
         if (cutPoints.isEmpty()) {
-            return copyAsIs(inputFile, outputDir);
+            return copyAsIs(inputFile, sourceDoc.getNumberOfPages(), outputDir, analysis.getMetrics());
         }
         
-        return performSegmentation(inputFile, cutPoints, analysis.getTextBlocks(), outputDir);
+        List<Segment> segments = calculateSegments(sourceDoc, cutPoints, analysis.getBlockCount(), cropToCuts);
+        return performSegmentation(sourceDoc, inputFile, segments, cropToCuts, outputDir, analysis.getMetrics());
     }
 
-    private void validateInputs(File inputFile, int numCuts, File outputDir) throws IOException {
+    private void validateInputs(File inputFile, int numCuts) throws IOException {
         if (!inputFile.exists()) {
             throw new IOException("Input file does not exist: " + inputFile.getAbsolutePath());
         }
@@ -46,41 +184,46 @@ public class PDFSegmenter {
         if (numCuts < 1) {
             throw new IllegalArgumentException("Number of cuts must be at least 1");
         }
-        if (!outputDir.exists()) {
-            Files.createDirectories(outputDir.toPath());
-        }
     }
 
-    private List<File> copyAsIs(File inputFile, File outputDir) throws IOException {
+    private List<File> copyAsIs(File inputFile, int pages, File outputDir, SegmentationMetrics metrics) throws IOException {
         List<File> outputs = new ArrayList<>();
         String baseName = getBaseName(inputFile.getName());
         File outputFile = new File(outputDir, baseName + "_segment_1.pdf");
+        SegmentationEvents.SegmentSave event = new SegmentationEvents.SegmentSave();
+        event.begin();
+        long start = System.nanoTime();
         Files.copy(inputFile.toPath(), outputFile.toPath());
+        metrics.recordSince(SegmentationMetrics.Stage.SAVE, start);
+        long written = outputFile.length();
+        metrics.increment(SegmentationMetrics.Counter.SEGMENTS);
+        metrics.add(SegmentationMetrics.Counter.WRITTEN_BYTES, written);
+        if (event.shouldCommit()) {
+            event.documentPath = SegmentationEvents.path(inputFile);
+            event.pages = pages;
+            event.segmentPath = outputFile.getAbsolutePath();
+            event.bytesWritten = written;
+            event.commit();
+        }
         outputs.add(outputFile);
         return outputs;
     }
 
-    private List<File> performSegmentation(File inputFile, List<CutPoint> cutPoints, 
-                                           List<TextBlock> blocks, File outputDir) throws IOException {
+    private List<File> performSegmentation(PDDocument sourceDoc, File inputFile, List<Segment> segments,
+                                           boolean crop, File outputDir, SegmentationMetrics metrics) throws IOException {
         List<File> outputFiles = new ArrayList<>();
         String baseName = getBaseName(inputFile.getName());
         
-        try (PDDocument sourceDoc = PDDocument.load(inputFile)) {
-            List<Segment> segments = calculateSegments(cutPoints, blocks, sourceDoc.getNumberOfPages());
-            
-            for (int i = 0; i < segments.size(); i++) {
-                Segment seg = segments.get(i);
-                File outputFile = new File(outputDir, baseName + "_segment_" + (i + 1) + ".pdf");
-                
-                createSegmentPdf(sourceDoc, seg, outputFile);
-                outputFiles.add(outputFile);
-            }
+        for (int i = 0; i < segments.size(); i++) {
+            outputFiles.add(new File(outputDir, baseName + "_segment_" + (i + 1) + ".pdf"));
         }
         
+        new SegmentWriter(loader, writerThreads, metrics, crop).write(sourceDoc, inputFile, segments, outputFiles);
         return outputFiles;
     }
 
-    private List<Segment> calculateSegments(List<CutPoint> cutPoints, List<TextBlock> blocks, int totalPages) {
+    private List<Segment> calculateSegments(PDDocument sourceDoc, List<CutPoint> cutPoints, int blockCount,
+                                            boolean crop) {
         List<Segment> segments = new ArrayList<>();
         
         int startBlockIdx = 0;
@@ -91,60 +234,40 @@ public class PDFSegmenter {
             int endBlockIdx = cut.getBlockIndex();
             int endPage = cut.getPageNumber();
             float endY = cut.getYPosition();
+            int nextPage = endPage;
+            
+            if (crop) {
+                // Split in the middle of the gap; a gap that runs past the page bottom is split at the page break.
+                float boundary = cut.getYPosition() + cut.getGapSize() / 2;
+                if (cut.getYPosition() + cut.getGapSize() <= pageHeight(sourceDoc, endPage)) {
+                    endY = boundary;
+                } else if (endPage + 1 < sourceDoc.getNumberOfPages()) {
+                    endY = Float.MAX_VALUE;
+                    nextPage = endPage + 1;
+                }
+            }
             
             segments.add(new Segment(startPage, endPage, startY, endY, startBlockIdx, endBlockIdx));
             
             startBlockIdx = endBlockIdx + 1;
-            startPage = endPage;
-            startY = endY;
+            startPage = nextPage;
+            startY = nextPage == endPage ? endY : 0;
         }
         
-        int lastBlockIdx = blocks.isEmpty() ? 0 : blocks.size() - 1;
-        int lastPage = totalPages - 1;
+        int lastBlockIdx = blockCount == 0 ? 0 : blockCount - 1;
+        int lastPage = sourceDoc.getNumberOfPages() - 1;
         segments.add(new Segment(startPage, lastPage, startY, Float.MAX_VALUE, startBlockIdx, lastBlockIdx));
         
         return segments;
     }
 
-    private void createSegmentPdf(PDDocument sourceDoc, Segment segment, File outputFile) throws IOException {
-        try (PDDocument newDoc = new PDDocument()) {
-            for (int pageNum = segment.startPage; pageNum <= segment.endPage && pageNum < sourceDoc.getNumberOfPages(); pageNum++) {
-                PDPage sourcePage = sourceDoc.getPage(pageNum);
-                PDPage newPage = new PDPage(sourcePage.getMediaBox());
-                
-                newDoc.importPage(sourcePage);
-            }
-            
-            if (newDoc.getNumberOfPages() == 0) {
-                PDPage emptyPage = new PDPage(PDRectangle.LETTER);
-                newDoc.addPage(emptyPage);
-            }
-            
-            newDoc.save(outputFile);
-        }
+    private static float pageHeight(PDDocument document, int pageIndex) {
+        return pageIndex < document.getNumberOfPages() ? document.getPage(pageIndex).getCropBox().getHeight()
+                : Float.MAX_VALUE;
     }
 
     private String getBaseName(String fileName) {
         int lastDot = fileName.lastIndexOf('.');
         return lastDot > 0 ? fileName.substring(0, lastDot) : fileName;
     }
-
-    private static class Segment {
-        final int startPage;
-        final int endPage;
-        final float startY;
-        final float endY;
-        final int startBlockIdx;
-        final int endBlockIdx;
-
-        Segment(int startPage, int endPage, float startY, float endY, int startBlockIdx, int endBlockIdx) {
-            this.startPage = startPage;
-            this.endPage = endPage;
-            this.startY = startY;
-            this.endY = endY;
-            this.startBlockIdx = startBlockIdx;
-            this.endBlockIdx = endBlockIdx;
-        }
-    }
 }
-
@@ -0,0 +1,88 @@
+package com.pdfsegmenter.segmenter;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Copies pages into one output document without PDDocument.importPage, which decodes and re-compresses
+// every content stream and drops inherited resources. The copied page dictionary keeps referencing the
+// source's resource, font and image objects; COSWriter writes each shared object once per output file,
+// so a font or image used on every page of a segment is serialized once, with its stream bytes as-is.
+class PageCopier {
+    private final PDDocument target;
+    private final Map<COSStream, COSStream> compressedStreams = new IdentityHashMap<>();
+
+    PageCopier(PDDocument target) {
+        this.target = target;
+    }
+
+    PDPage copy(PDPage source) throws IOException {
+        COSDictionary sourceDict = source.getCOSObject();
+        COSDictionary pageDict = new COSDictionary(sourceDict);
+        pageDict.removeItem(COSName.PARENT);
+        
+        PDPage page = new PDPage(pageDict);
+        // Inheritable attributes live on the source page tree, which is not copied.
+        page.setMediaBox(source.getMediaBox());
+        page.setCropBox(source.getCropBox());
+        page.setRotation(source.getRotation());
+        PDResources resources = source.getResources();
+        if (resources != null && !sourceDict.containsKey(COSName.RESOURCES)) {
+            page.setResources(resources);
+        }
+        
+        COSBase contents = sourceDict.getDictionaryObject(COSName.CONTENTS);
+        if (contents != null) {
+            pageDict.setItem(COSName.CONTENTS, copyContents(sourceDict.getItem(COSName.CONTENTS), contents));
+        }
+        
+        target.addPage(page);
+        return page;
+    }
+
+    private COSBase copyContents(COSBase item, COSBase contents) throws IOException {
+        if (contents instanceof COSStream) {
+            COSStream stream = (COSStream) contents;
+            return stream.getFilters() != null ? item : compressed(stream);
+        }
+        if (contents instanceof COSArray) {
+            COSArray array = (COSArray) contents;
+            COSArray copy = new COSArray();
+            for (int i = 0; i < array.size(); i++) {
+                COSBase element = array.get(i);
+                COSBase resolved = element instanceof COSObject ? ((COSObject) element).getObject() : element;
+                copy.add(resolved == null ? element : copyContents(element, resolved));
+            }
+            return copy;
+        }
+        return item;
+    }
+
+    // Only uncompressed content is encoded; streams that already carry a filter are written byte for byte.
+    private COSStream compressed(COSStream source) throws IOException {
+        COSStream existing = compressedStreams.get(source);
+        if (existing != null) {
+            return existing;
+        }
+        COSStream stream = target.getDocument().createCOSStream();
+        try (InputStream in = source.createInputStream();
+             OutputStream out = stream.createOutputStream(COSName.FLATE_DECODE)) {
+            IOUtils.copy(in, out);
+        }
+        compressedStreams.put(source, stream);
+        return stream;
+    }
+}
@@ -0,0 +1,50 @@
+package com.pdfsegmenter.segmenter;
+
+// Pages are 0-based and inclusive; startY and endY are text y positions on the first and last page, where
+// Float.MAX_VALUE means the bottom of the page.
+public final class Segment {
+    final int startPage;
+    final int endPage;
+    final float startY;
+    final float endY;
+    final int startBlockIdx;
+    final int endBlockIdx;
+
+    public Segment(int startPage, int endPage, float startY, float endY, int startBlockIdx, int endBlockIdx) {
+        this.startPage = startPage;
+        this.endPage = endPage;
+        this.startY = startY;
+        this.endY = endY;
+        this.startBlockIdx = startBlockIdx;
+        this.endBlockIdx = endBlockIdx;
+    }
+
+    public int getStartPage() {
+        return startPage;
+    }
+
+    public int getEndPage() {
+        return endPage;
+    }
+
+    public float getStartY() {
+        return startY;
+    }
+
+    public float getEndY() {
+        return endY;
+    }
+
+    public int getStartBlockIndex() {
+        return startBlockIdx;
+    }
+
+    public int getEndBlockIndex() {
+        return endBlockIdx;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Segment[pages=%d-%d, blocks=%d-%d]", startPage, endPage, startBlockIdx, endBlockIdx);
+    }
+}
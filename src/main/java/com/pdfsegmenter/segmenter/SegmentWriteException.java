@@ -0,0 +1,32 @@
+package com.pdfsegmenter.segmenter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+
+public class SegmentWriteException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final SortedMap<Integer, Exception> failures;
+
+    public SegmentWriteException(int totalSegments, SortedMap<Integer, Exception> failures) {
+        super(buildMessage(totalSegments, failures));
+        this.failures = Collections.unmodifiableSortedMap(failures);
+        failures.values().forEach(this::addSuppressed);
+    }
+
+    // Keyed by 1-based segment number, matching the output file names.
+    public SortedMap<Integer, Exception> getFailures() {
+        return failures;
+    }
+
+    private static String buildMessage(int totalSegments, Map<Integer, Exception> failures) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Failed to write ").append(failures.size()).append(" of ").append(totalSegments).append(" segments:");
+        for (Map.Entry<Integer, Exception> failure : failures.entrySet()) {
+            sb.append(" [segment ").append(failure.getKey()).append(": ").append(failure.getValue().getMessage()).append("]");
+        }
+        return sb.toString();
+    }
+}
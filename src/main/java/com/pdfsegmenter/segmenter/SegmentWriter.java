@@ -0,0 +1,172 @@
+package com.pdfsegmenter.segmenter;
+
+import com.pdfsegmenter.io.DocumentLoader;
+import com.pdfsegmenter.metrics.SegmentationEvents;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Counter;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Stage;
+import com.pdfsegmenter.util.NamedThreadFactory;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SegmentWriter {
+    private final DocumentLoader loader;
+    private final int threads;
+    private final SegmentationMetrics metrics;
+    private final boolean cropToCuts;
+
+    SegmentWriter(DocumentLoader loader, int threads, SegmentationMetrics metrics) {
+        this(loader, threads, metrics, false);
+    }
+
+    SegmentWriter(DocumentLoader loader, int threads, SegmentationMetrics metrics, boolean cropToCuts) {
+        this.loader = loader;
+        this.threads = threads;
+        this.metrics = metrics;
+        this.cropToCuts = cropToCuts;
+    }
+
+    // Every segment is attempted. Failures are collected and thrown together as one SegmentWriteException,
+    // whatever the thread count, and the segments that were written are left in place.
+    void write(PDDocument sourceDoc, File sourceFile, List<Segment> segments, List<File> outputFiles) throws IOException {
+        String sourcePath = SegmentationEvents.path(sourceFile);
+        int workers = Math.min(threads, segments.size());
+        AtomicInteger nextSegment = new AtomicInteger();
+        SortedMap<Integer, Exception> failures = new TreeMap<>();
+        List<Exception> handleFailures = new ArrayList<>();
+        if (workers <= 1) {
+            writeNext(sourceDoc, sourcePath, segments, outputFiles, nextSegment, failures);
+        } else {
+            writeConcurrently(sourceDoc, sourceFile, sourcePath, workers, segments, outputFiles, nextSegment, failures,
+                    handleFailures);
+        }
+        
+        if (!failures.isEmpty()) {
+            SegmentWriteException exception = new SegmentWriteException(segments.size(), failures);
+            handleFailures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    private void writeConcurrently(PDDocument sourceDoc, File sourceFile, String sourcePath, int workers,
+                                   List<Segment> segments, List<File> outputFiles, AtomicInteger nextSegment,
+                                   SortedMap<Integer, Exception> failures, List<Exception> handleFailures)
+            throws IOException {
+        // PDDocument is not safe for concurrent reads, so every extra worker opens its own
+        // read-only handle on the source file; the calling thread keeps using sourceDoc.
+        ExecutorService executor = Executors.newFixedThreadPool(workers - 1, new NamedThreadFactory("segment-writer"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 1; w < workers; w++) {
+                futures.add(executor.submit(() -> {
+                    try (PDDocument handle = loader.load(sourceFile)) {
+                        writeNext(handle, sourcePath, segments, outputFiles, nextSegment, failures);
+                    } catch (IOException | RuntimeException e) {
+                        synchronized (handleFailures) {
+                            handleFailures.add(e);
+                        }
+                    }
+                }));
+            }
+            
+            writeNext(sourceDoc, sourcePath, segments, outputFiles, nextSegment, failures);
+            
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing segments");
+        } catch (ExecutionException e) {
+            throw new IOException("Segment writer failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeNext(PDDocument handle, String sourcePath, List<Segment> segments, List<File> outputFiles,
+                           AtomicInteger nextSegment, SortedMap<Integer, Exception> failures) {
+        int index;
+        while ((index = nextSegment.getAndIncrement()) < segments.size()) {
+            try {
+                createSegmentPdf(handle, sourcePath, index, segments.get(index), outputFiles.get(index));
+            } catch (IOException | RuntimeException e) {
+                synchronized (failures) {
+                    failures.put(index + 1, e);
+                }
+            }
+        }
+    }
+
+    private void createSegmentPdf(PDDocument sourceDoc, String sourcePath, int index, Segment segment,
+                                  File outputFile) throws IOException {
+        SegmentationEvents.SegmentSave event = new SegmentationEvents.SegmentSave();
+        event.begin();
+        long start = System.nanoTime();
+        int pages;
+        try (PDDocument newDoc = loader.createDocument()) {
+            PageCopier copier = new PageCopier(newDoc);
+            for (int pageNum = segment.startPage; pageNum <= segment.endPage && pageNum < sourceDoc.getNumberOfPages(); pageNum++) {
+                PDPage sourcePage = sourceDoc.getPage(pageNum);
+                
+                PDPage page = copier.copy(sourcePage);
+                if (cropToCuts) {
+                    crop(page, pageNum == segment.startPage ? segment.startY : 0,
+                            pageNum == segment.endPage ? segment.endY : Float.MAX_VALUE);
+                }
+            }
+            
+            if (newDoc.getNumberOfPages() == 0) {
+                PDPage emptyPage = new PDPage(PDRectangle.LETTER);
+                newDoc.addPage(emptyPage);
+            }
+            
+            start = metrics.recordSince(Stage.BUILD, start);
+            pages = newDoc.getNumberOfPages();
+            newDoc.save(outputFile);
+        }
+        metrics.recordSince(Stage.SAVE, start);
+        long written = outputFile.length();
+        metrics.increment(Counter.SEGMENTS);
+        metrics.add(Counter.WRITTEN_BYTES, written);
+        if (event.shouldCommit()) {
+            event.documentPath = sourcePath;
+            event.segmentIndex = index;
+            event.pages = pages;
+            event.segmentPath = outputFile.getAbsolutePath();
+            event.bytesWritten = written;
+            event.commit();
+        }
+    }
+
+    // top and bottom are text y positions, measured down from the top of the source CropBox.
+    private static void crop(PDPage page, float top, float bottom) {
+        // On a rotated page the text y axis runs along another side of the box, so the page is kept whole.
+        if (top <= 0 && bottom == Float.MAX_VALUE || page.getRotation() % 360 != 0) {
+            return;
+        }
+        PDRectangle box = page.getCropBox();
+        float upperY = box.getUpperRightY() - Math.max(top, 0);
+        float lowerY = Math.max(box.getLowerLeftY(), box.getUpperRightY() - bottom);
+        if (upperY <= lowerY) {
+            return;
+        }
+        PDRectangle cropped = new PDRectangle(box.getLowerLeftX(), lowerY, box.getWidth(), upperY - lowerY);
+        page.setMediaBox(cropped);
+        page.setCropBox(cropped);
+    }
+}
@@ -0,0 +1,212 @@
+package com.pdfsegmenter.segmenter;
+
+import com.pdfsegmenter.model.CutPoint;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Everything PDFSegmenter.apply needs to write the segments of one document without analyzing it again.
+// The source is identified by path, length and modification time; apply refuses a source that has changed.
+//
+// Plans are stored as UTF-8 text, one record per line:
+//   pdfsegmenter-plan 1
+//   source <absolute path>
+//   source_length <bytes>
+//   source_modified <epoch millis>
+//   pages <total pages>
+//   blocks <block count>
+//   crop <true|false>
+//   cut <page> <y> <block index> <gap size>                          one per cut, in document order
+//   segment <start page> <end page> <start y> <end y> <start block> <end block>   cuts + 1 of them
+// Floats are written with Float.toString so they read back to the same value.
+public final class SegmentationPlan {
+    private static final String HEADER = "pdfsegmenter-plan";
+    private static final int FORMAT_VERSION = 1;
+
+    private final File sourceFile;
+    private final long sourceLength;
+    private final long sourceLastModified;
+    private final int totalPages;
+    private final int blockCount;
+    private final boolean cropToCuts;
+    private final List<CutPoint> cutPoints;
+    private final List<Segment> segments;
+
+    public SegmentationPlan(File sourceFile, long sourceLength, long sourceLastModified, int totalPages,
+                            int blockCount, boolean cropToCuts, List<CutPoint> cutPoints, List<Segment> segments) {
+        if (segments.size() != cutPoints.size() + 1) {
+            throw new IllegalArgumentException("A plan with " + cutPoints.size() + " cuts needs "
+                    + (cutPoints.size() + 1) + " segments, not " + segments.size());
+        }
+        this.sourceFile = sourceFile.getAbsoluteFile();
+        this.sourceLength = sourceLength;
+        this.sourceLastModified = sourceLastModified;
+        this.totalPages = totalPages;
+        this.blockCount = blockCount;
+        this.cropToCuts = cropToCuts;
+        this.cutPoints = Collections.unmodifiableList(new ArrayList<>(cutPoints));
+        this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+    }
+
+    public File getSourceFile() {
+        return sourceFile;
+    }
+
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    public long getSourceLastModified() {
+        return sourceLastModified;
+    }
+
+    public int getTotalPages() {
+        return totalPages;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public boolean isCropToCuts() {
+        return cropToCuts;
+    }
+
+    public List<CutPoint> getCutPoints() {
+        return cutPoints;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    // False once the source has been replaced or rewritten since the plan was made.
+    public boolean matchesSource() {
+        return sourceFile.isFile() && sourceFile.length() == sourceLength
+                && sourceFile.lastModified() == sourceLastModified;
+    }
+
+    public void write(File planFile) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(planFile.toPath(), StandardCharsets.UTF_8)) {
+            out.write(HEADER + " " + FORMAT_VERSION + "\n");
+            out.write("source " + sourceFile.getPath() + "\n");
+            out.write("source_length " + sourceLength + "\n");
+            out.write("source_modified " + sourceLastModified + "\n");
+            out.write("pages " + totalPages + "\n");
+            out.write("blocks " + blockCount + "\n");
+            out.write("crop " + cropToCuts + "\n");
+            for (CutPoint cut : cutPoints) {
+                out.write("cut " + cut.getPageNumber() + " " + cut.getYPosition() + " " + cut.getBlockIndex() + " "
+                        + cut.getGapSize() + "\n");
+            }
+            for (Segment segment : segments) {
+                out.write("segment " + segment.startPage + " " + segment.endPage + " " + segment.startY + " "
+                        + segment.endY + " " + segment.startBlockIdx + " " + segment.endBlockIdx + "\n");
+            }
+        }
+    }
+
+    public static SegmentationPlan read(File planFile) throws IOException {
+        File source = null;
+        long length = -1;
+        long lastModified = -1;
+        int pages = -1;
+        int blocks = -1;
+        boolean crop = false;
+        List<CutPoint> cuts = new ArrayList<>();
+        List<Segment> segments = new ArrayList<>();
+
+        try (BufferedReader in = Files.newBufferedReader(planFile.toPath(), StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (header == null || !header.equals(HEADER + " " + FORMAT_VERSION)) {
+                throw new IOException("Not a version " + FORMAT_VERSION + " segmentation plan: " + planFile);
+            }
+
+            String line;
+            int lineNumber = 1;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                String key = space < 0 ? line : line.substring(0, space);
+                String value = space < 0 ? "" : line.substring(space + 1);
+                try {
+                    switch (key) {
+                        case "source":
+                            source = new File(value);
+                            break;
+                        case "source_length":
+                            length = Long.parseLong(value);
+                            break;
+                        case "source_modified":
+                            lastModified = Long.parseLong(value);
+                            break;
+                        case "pages":
+                            pages = Integer.parseInt(value);
+                            break;
+                        case "blocks":
+                            blocks = Integer.parseInt(value);
+                            break;
+                        case "crop":
+                            crop = Boolean.parseBoolean(value);
+                            break;
+                        case "cut":
+                            cuts.add(parseCut(value));
+                            break;
+                        case "segment":
+                            segments.add(parseSegment(value));
+                            break;
+                        default:
+                            throw new IOException("Unknown record '" + key + "'");
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new IOException("Invalid segmentation plan " + planFile + " at line " + lineNumber
+                            + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        if (source == null || length < 0 || lastModified < 0 || pages < 0 || blocks < 0) {
+            throw new IOException("Incomplete segmentation plan: " + planFile);
+        }
+        for (Segment segment : segments) {
+            if (segment.startPage < 0 || segment.endPage >= pages || segment.startPage > segment.endPage) {
+                throw new IOException("Segment " + segment + " is outside the " + pages + " pages of " + planFile);
+            }
+        }
+        try {
+            return new SegmentationPlan(source, length, lastModified, pages, blocks, crop, cuts, segments);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid segmentation plan " + planFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static CutPoint parseCut(String value) throws IOException {
+        String[] fields = fields(value, 4);
+        return new CutPoint(Integer.parseInt(fields[0]), Float.parseFloat(fields[1]), Integer.parseInt(fields[2]),
+                Float.parseFloat(fields[3]));
+    }
+
+    private static Segment parseSegment(String value) throws IOException {
+        String[] fields = fields(value, 6);
+        return new Segment(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Float.parseFloat(fields[2]),
+                Float.parseFloat(fields[3]), Integer.parseInt(fields[4]), Integer.parseInt(fields[5]));
+    }
+
+    private static String[] fields(String value, int count) throws IOException {
+        String[] fields = value.split(" ");
+        if (fields.length != count) {
+            throw new IOException("Expected " + count + " fields, found " + fields.length);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,29 @@
+package com.pdfsegmenter.segmenter;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+
+import java.io.File;
+import java.util.List;
+
+public class SegmentationReport {
+    private final List<File> segments;
+    private final PDFAnalyzer.AnalysisResult analysis;
+
+    public SegmentationReport(List<File> segments, PDFAnalyzer.AnalysisResult analysis) {
+        this.segments = segments;
+        this.analysis = analysis;
+    }
+
+    public List<File> getSegments() {
+        return segments;
+    }
+
+    public PDFAnalyzer.AnalysisResult getAnalysis() {
+        return analysis;
+    }
+
+    public SegmentationMetrics getMetrics() {
+        return analysis.getMetrics();
+    }
+}
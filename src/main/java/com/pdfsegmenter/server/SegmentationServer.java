@@ -0,0 +1,336 @@
+package com.pdfsegmenter.server;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.model.CutPoint;
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import com.pdfsegmenter.util.NamedThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipOutputStream;
+
+// Keeps one JVM, PDFBox's font and CMap caches and the analyzer's cache warm across requests.
+//   POST /segment?numCuts=N[&format=json|zip]  body: the PDF
+//   GET  /metrics                              stage timings and counters, Prometheus text format
+//   GET  /health
+public class SegmentationServer {
+    public static final long DEFAULT_MAX_UPLOAD_BYTES = 64L << 20;
+    private static final Logger LOG = Logger.getLogger(SegmentationServer.class.getName());
+
+    private final PDFSegmenter segmenter;
+    private final SegmentationMetrics totals = new SegmentationMetrics();
+    private int workers = 1;
+    private int queueCapacity = 4;
+    private long maxUploadBytes = DEFAULT_MAX_UPLOAD_BYTES;
+    private File tempDir;
+    private HttpServer server;
+    private ExecutorService exchangePool;
+    private Semaphore admitted;
+    private Semaphore running;
+
+    public SegmentationServer(PDFSegmenter segmenter) {
+        this.segmenter = segmenter;
+    }
+
+    // Documents processed at the same time.
+    public void setWorkers(int workers) {
+        this.workers = requireAtLeast(workers, 1, "Number of server workers");
+    }
+
+    // Requests allowed to upload or wait for a worker on top of those being processed; anything beyond that is
+    // answered with 503 straight away.
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = requireAtLeast(queueCapacity, 0, "Server queue capacity");
+    }
+
+    public void setMaxUploadBytes(long maxUploadBytes) {
+        if (maxUploadBytes < 1) {
+            throw new IllegalArgumentException("Maximum upload size must be at least 1 byte");
+        }
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    // Where uploads and segments are staged while a request runs; null means the system temp directory.
+    public void setTempDir(File tempDir) {
+        this.tempDir = tempDir;
+    }
+
+    public SegmentationMetrics getMetrics() {
+        return totals;
+    }
+
+    // Requests that could be admitted right now; for tests. A slot is freed only after its response is sent.
+    int freeSlots() {
+        return admitted.availablePermits();
+    }
+
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        admitted = new Semaphore(workers + queueCapacity);
+        running = new Semaphore(workers);
+        // Exchange threads are cheap: beyond the admitted requests they only write a 503 and exit.
+        exchangePool = Executors.newCachedThreadPool(new NamedThreadFactory("server-exchange"));
+        server = HttpServer.create(address, 0);
+        server.setExecutor(exchangePool);
+        server.createContext("/segment", this::handleSegment);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "ok\n"));
+        server.start();
+    }
+
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("Server not started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    // Waits up to delaySeconds for exchanges in progress to finish.
+    public synchronized void stop(int delaySeconds) {
+        if (server != null) {
+            server.stop(delaySeconds);
+            exchangePool.shutdownNow();
+            server = null;
+        }
+    }
+
+    void handleSegment(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain", "Use POST with the PDF as the request body\n");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            int numCuts;
+            try {
+                numCuts = Integer.parseInt(query.getOrDefault("numCuts", ""));
+            } catch (NumberFormatException e) {
+                respond(exchange, 400, "text/plain", "numCuts must be a valid integer\n");
+                return;
+            }
+            String format = query.getOrDefault("format", "json");
+            if (numCuts < 1 || !format.equals("json") && !format.equals("zip")) {
+                respond(exchange, 400, "text/plain", "numCuts must be at least 1 and format json or zip\n");
+                return;
+            }
+            // Sent by the client; not every HttpServer build validates it before the handler runs.
+            String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+            long declaredLength;
+            try {
+                declaredLength = declared == null ? -1 : Long.parseLong(declared.trim());
+            } catch (NumberFormatException e) {
+                respond(exchange, 400, "text/plain", "Content-Length must be a valid integer\n");
+                return;
+            }
+            if (declaredLength > maxUploadBytes) {
+                respond(exchange, 413, "text/plain", "Upload exceeds " + maxUploadBytes + " bytes\n");
+                return;
+            }
+
+            if (!admitted.tryAcquire()) {
+                totals.increment(SegmentationMetrics.Counter.REJECTED_REQUESTS);
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "text/plain", "Server busy\n");
+                return;
+            }
+            try {
+                process(exchange, numCuts, format);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "text/plain", "Server shutting down\n");
+            } catch (IOException | RuntimeException e) {
+                // Messages can name staged files; the client gets a generic answer and the log gets the details.
+                LOG.log(Level.WARNING, "Segmentation request failed", e);
+                // Once the headers are out the client only sees a truncated body.
+                if (exchange.getResponseCode() == -1) {
+                    respond(exchange, 500, "text/plain", "Segmentation failed\n");
+                }
+            } finally {
+                admitted.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void process(HttpExchange exchange, int numCuts, String format) throws IOException, InterruptedException {
+        Path workDir = tempDir != null
+                ? Files.createTempDirectory(tempDir.toPath(), "pdfsegmenter-request")
+                : Files.createTempDirectory("pdfsegmenter-request");
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        try {
+            File input = workDir.resolve("document.pdf").toFile();
+            if (!receiveUpload(exchange, input)) {
+                respond(exchange, 413, "text/plain", "Upload exceeds " + maxUploadBytes + " bytes\n");
+                return;
+            }
+
+            // The upload above only holds an admission slot, so a slow client cannot keep a worker idle.
+            running.acquire();
+            try {
+                segment(exchange, input, workDir, numCuts, format, metrics);
+            } finally {
+                running.release();
+            }
+        } finally {
+            totals.merge(metrics);
+            deleteRecursively(workDir);
+        }
+    }
+
+    private void segment(HttpExchange exchange, File input, Path workDir, int numCuts, String format,
+                         SegmentationMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        PDDocument document;
+        try {
+            document = segmenter.getLoader().load(input);
+        } catch (IOException e) {
+            metrics.increment(SegmentationMetrics.Counter.FAILED_DOCUMENTS);
+            LOG.log(Level.FINE, "Could not read uploaded PDF", e);
+            respond(exchange, 422, "text/plain", "Could not read PDF\n");
+            return;
+        }
+        try (document) {
+            metrics.recordSince(SegmentationMetrics.Stage.LOAD, start);
+            metrics.add(SegmentationMetrics.Counter.READ_BYTES, input.length());
+            PDFAnalyzer.AnalysisResult analysis = segmenter.analyze(input, document, numCuts, metrics);
+            if (format.equals("json")) {
+                respond(exchange, 200, "application/json", planJson(analysis));
+            } else {
+                File outputDir = workDir.resolve("segments").toFile();
+                List<File> segments = segmenter.writeSegments(document, input, analysis, outputDir);
+                respondZip(exchange, segments);
+            }
+        } catch (IOException | RuntimeException e) {
+            metrics.increment(SegmentationMetrics.Counter.FAILED_DOCUMENTS);
+            throw e;
+        }
+    }
+
+    // Returns false, leaving the partial file behind for cleanup, when the body is larger than the limit.
+    private boolean receiveUpload(HttpExchange exchange, File target) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (InputStream in = exchange.getRequestBody();
+             OutputStream out = Files.newOutputStream(target.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxUploadBytes) {
+                    return false;
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return true;
+    }
+
+    private static String planJson(PDFAnalyzer.AnalysisResult analysis) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"pages\":").append(analysis.getTotalPages());
+        json.append(",\"blocks\":").append(analysis.getBlockCount());
+        json.append(",\"cuts\":[");
+        List<CutPoint> cuts = analysis.getCutPoints();
+        for (int i = 0; i < cuts.size(); i++) {
+            CutPoint cut = cuts.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT, "{\"page\":%d,\"y\":%.2f,\"block_index\":%d,\"gap_size\":%.2f}",
+                    cut.getPageNumber(), cut.getYPosition(), cut.getBlockIndex(), cut.getGapSize()));
+        }
+        json.append("],\"metrics\":").append(analysis.getMetrics().toJson());
+        return json.append("}\n").toString();
+    }
+
+    private void respondZip(HttpExchange exchange, List<File> segments) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/zip");
+        exchange.sendResponseHeaders(200, 0);
+        try (ZipOutputStream zip = new ZipOutputStream(exchange.getResponseBody())) {
+            // Segment PDFs are already compressed; storing them at level 0 saves CPU for almost no size.
+            zip.setLevel(0);
+            for (File segment : segments) {
+                zip.putNextEntry(new ZipEntry(segment.getName()));
+                Files.copy(segment.toPath(), zip);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, "text/plain; version=0.0.4", totals.toPrometheus());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ignored) {
+            // Leftovers only cost temp space; the response has already been sent.
+        }
+    }
+
+    private static int requireAtLeast(int value, int minimum, String name) {
+        if (value < minimum) {
+            throw new IllegalArgumentException(name + " must be at least " + minimum);
+        }
+        return value;
+    }
+}
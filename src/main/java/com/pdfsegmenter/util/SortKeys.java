@@ -0,0 +1,28 @@
+package com.pdfsegmenter.util;
+
+// Packs a float and an int index into one long, so Arrays.sort(long[]) orders rows by value without boxing and,
+// since the index is part of the key, keeps equal values in index order as a stable sort would.
+public final class SortKeys {
+    private SortKeys() {
+    }
+
+    // index must not be negative.
+    public static long ascending(float value, int index) {
+        return ((long) sortableBits(value) << 32) | index;
+    }
+
+    // Largest value first; equal values still in ascending index order.
+    public static long descending(float value, int index) {
+        return ((long) ~sortableBits(value) << 32) | index;
+    }
+
+    public static int index(long key) {
+        return (int) key;
+    }
+
+    // Flips the magnitude bits of negative floats so that signed int order matches Float.compare.
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+}
@@ -0,0 +1,66 @@
+package com.pdfsegmenter.analyzer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlyphBufferTest {
+    
+    @Test
+    void shouldStoreGlyphGeometryAndText() {
+        GlyphBuffer buffer = new GlyphBuffer();
+        buffer.add(10f, 20f, 5f, 12f, "A");
+        buffer.add(15f, 20f, 9f, 12f, "fi");
+        
+        assertEquals(2, buffer.size());
+        assertEquals(15f, buffer.getX(1));
+        assertEquals(20f, buffer.getY(1));
+        assertEquals(9f, buffer.getWidth(1));
+        assertEquals(12f, buffer.getHeight(1));
+        assertEquals("A", textOf(buffer, 0));
+        assertEquals("fi", textOf(buffer, 1));
+    }
+    
+    @Test
+    void shouldGrowBeyondInitialCapacity() {
+        GlyphBuffer buffer = new GlyphBuffer();
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(i, i * 2, 1f, 1f, Integer.toString(i));
+        }
+        
+        assertEquals(1000, buffer.size());
+        assertEquals(999f, buffer.getX(999));
+        assertEquals(1998f, buffer.getY(999));
+        assertEquals("999", textOf(buffer, 999));
+        assertEquals("500", textOf(buffer, 500));
+    }
+    
+    @Test
+    void shouldBeEmptyAfterClear() {
+        GlyphBuffer buffer = new GlyphBuffer();
+        buffer.add(1f, 2f, 3f, 4f, "x");
+        buffer.clear();
+        
+        assertTrue(buffer.isEmpty());
+        buffer.add(5f, 6f, 7f, 8f, "y");
+        assertEquals("y", textOf(buffer, 0));
+    }
+    
+    @Test
+    void shouldRecycleReleasedBuffers() {
+        GlyphBufferPool pool = new GlyphBufferPool();
+        GlyphBuffer buffer = pool.acquire();
+        buffer.add(1f, 2f, 3f, 4f, "x");
+        pool.release(buffer);
+        
+        GlyphBuffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertTrue(reused.isEmpty());
+    }
+    
+    private static String textOf(GlyphBuffer buffer, int index) {
+        StringBuilder sb = new StringBuilder();
+        buffer.appendText(index, sb);
+        return sb.toString();
+    }
+}
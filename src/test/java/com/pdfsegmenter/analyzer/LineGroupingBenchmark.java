@@ -0,0 +1,51 @@
+package com.pdfsegmenter.analyzer;
+
+import com.pdfsegmenter.benchmark.SyntheticPdf;
+import com.pdfsegmenter.model.TextBlock;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineGroupingBenchmark {
+    
+    @Param({"SPARSE", "REPORT", "TWO_COLUMN", "DENSE_FOOTNOTES"})
+    SyntheticPdf.Layout layout;
+    
+    @Param({"TEXT", "LAZY", "NONE"})
+    PDFAnalyzer.BlockContent blockContent;
+    
+    private final PDFAnalyzer analyzer = new PDFAnalyzer();
+    private final List<GlyphBuffer> pages = new ArrayList<>();
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        analyzer.setBlockContent(blockContent);
+        File dir = Files.createDirectories(new File("target/benchmark-pdfs").toPath()).toFile();
+        File pdfFile = SyntheticPdf.create(dir, layout, 20);
+        
+        try (PDDocument document = PDDocument.load(pdfFile)) {
+            new TextPositionExtractor(new GlyphBufferPool(), (pageIndex, glyphs) -> pages.add(glyphs)).extract(document);
+        }
+    }
+    
+    @Benchmark
+    public void groupGlyphsIntoBlocks(Blackhole blackhole) {
+        for (int i = 0; i < pages.size(); i++) {
+            List<TextBlock> blocks = analyzer.groupGlyphsIntoBlocks(pages.get(i), i);
+            blackhole.consume(blocks);
+        }
+    }
+}
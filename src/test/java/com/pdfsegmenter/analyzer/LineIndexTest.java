@@ -0,0 +1,176 @@
+package com.pdfsegmenter.analyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineIndexTest {
+    
+    private static final float THRESHOLD = 3.0f;
+    
+    @Test
+    void shouldGroupNearbyPositionsIntoSameLine() {
+        LineIndex index = new LineIndex(THRESHOLD);
+        index.add(100f, 0);
+        index.add(101.5f, 1);
+        index.add(110f, 2);
+        
+        assertEquals(2, index.getLines().size());
+        assertEquals(List.of(0, 1), glyphsOf(index.getLines().get(100f)));
+        assertEquals(List.of(2), glyphsOf(index.getLines().get(110f)));
+    }
+    
+    @Test
+    void shouldNotMatchLineExactlyAtThreshold() {
+        LineIndex index = new LineIndex(THRESHOLD);
+        index.add(100f, 0);
+        
+        assertNull(index.findMatchingLine(103f));
+        assertNull(index.findMatchingLine(97f));
+        assertEquals(100f, index.findMatchingLine(102.9f));
+    }
+    
+    @Test
+    void shouldPreferLowestMatchingLine() {
+        LineIndex index = new LineIndex(THRESHOLD);
+        index.add(100f, 0);
+        index.add(104f, 1);
+        
+        assertEquals(100f, index.findMatchingLine(102f));
+    }
+    
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 7L, 42L, 1234L, 98765L})
+    void shouldMatchLinearScanOnRandomizedInput(long seed) {
+        Random random = new Random(seed);
+        
+        for (int round = 0; round < 50; round++) {
+            int glyphs = 1 + random.nextInt(2000);
+            float pageHeight = 50f + random.nextFloat() * 1000f;
+            
+            LineIndex index = new LineIndex(THRESHOLD);
+            Map<Float, List<Integer>> reference = new TreeMap<>();
+            
+            for (int i = 0; i < glyphs; i++) {
+                float y = randomY(random, pageHeight);
+                index.add(y, i);
+                addWithLinearScan(reference, y, i);
+            }
+            
+            Map<Float, List<Integer>> actual = new TreeMap<>();
+            index.getLines().forEach((line, members) -> actual.put(line, glyphsOf(members)));
+            assertEquals(reference, actual, "seed " + seed + ", round " + round);
+        }
+    }
+    
+    @Test
+    void shouldSortLineGlyphsByXKeepingEqualXInInsertionOrder() {
+        GlyphBuffer buffer = new GlyphBuffer();
+        buffer.add(30f, 100f, 5f, 10f, "c");
+        buffer.add(10f, 100f, 5f, 10f, "a");
+        buffer.add(20f, 100f, 5f, 10f, "b1");
+        buffer.add(20f, 100f, 5f, 10f, "b2");
+        
+        LineIndex.Line line = new LineIndex.Line();
+        for (int i = 0; i < buffer.size(); i++) {
+            line.add(i);
+        }
+        line.sortByX(buffer);
+        
+        assertEquals(List.of(1, 2, 3, 0), glyphsOf(line));
+    }
+    
+    @ParameterizedTest
+    @ValueSource(longs = {3L, 11L, 2024L})
+    void shouldMatchStableSortOnRandomizedX(long seed) {
+        Random random = new Random(seed);
+        float[] xs = {-0.0f, 0.0f, -12.5f, 3f, 3f, 400f, Float.MAX_VALUE, -Float.MAX_VALUE};
+        
+        for (int round = 0; round < 50; round++) {
+            int glyphs = 1 + random.nextInt(500);
+            GlyphBuffer buffer = new GlyphBuffer();
+            LineIndex.Line line = new LineIndex.Line();
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < glyphs; i++) {
+                float x = random.nextBoolean() ? xs[random.nextInt(xs.length)] : (random.nextFloat() - 0.5f) * 1000f;
+                buffer.add(x, 100f, 5f, 10f, "g");
+                line.add(i);
+                expected.add(i);
+            }
+            expected.sort((a, b) -> Float.compare(buffer.getX(a), buffer.getX(b)));
+            
+            line.sortByX(buffer);
+            
+            assertEquals(expected, glyphsOf(line), "seed " + seed + ", round " + round);
+        }
+    }
+    
+    @Test
+    void shouldSortRightToLeftLineWithoutQuadraticWork() {
+        int glyphs = 200_000;
+        GlyphBuffer buffer = new GlyphBuffer();
+        LineIndex.Line line = new LineIndex.Line();
+        for (int i = 0; i < glyphs; i++) {
+            buffer.add(glyphs - i, 100f, 1f, 10f, "g");
+            line.add(i);
+        }
+        
+        // An insertion sort needs about 2 * 10^10 moves here and would run for tens of seconds.
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> line.sortByX(buffer));
+        for (int i = 0; i < glyphs; i++) {
+            assertEquals(glyphs - 1 - i, line.get(i));
+        }
+    }
+    
+    private static List<Integer> glyphsOf(LineIndex.Line line) {
+        List<Integer> glyphs = new ArrayList<>();
+        for (int i = 0; i < line.size(); i++) {
+            glyphs.add(line.get(i));
+        }
+        return glyphs;
+    }
+    
+    private float randomY(Random random, float pageHeight) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return random.nextFloat() * pageHeight;
+            case 1:
+                return Math.round(random.nextFloat() * pageHeight / 6f) * 6f;
+            case 2:
+                return Math.round(random.nextFloat() * pageHeight / 3f) * 3f + (random.nextFloat() - 0.5f) * 0.5f;
+            default:
+                return Math.round(random.nextFloat() * pageHeight / 12f) * 12f + random.nextFloat() * 4f;
+        }
+    }
+    
+    private static void addWithLinearScan(Map<Float, List<Integer>> lineGroups, float y, Integer item) {
+        Float matchingLine = findMatchingLineLinear(lineGroups.keySet(), y);
+        
+        if (matchingLine != null) {
+            lineGroups.get(matchingLine).add(item);
+        } else {
+            List<Integer> newLine = new ArrayList<>();
+            newLine.add(item);
+            lineGroups.put(y, newLine);
+        }
+    }
+    
+    private static Float findMatchingLineLinear(Set<Float> existingLines, float y) {
+        for (Float line : existingLines) {
+            if (Math.abs(line - y) < THRESHOLD) {
+                return line;
+            }
+        }
+        return null;
+    }
+}
@@ -1,8 +1,13 @@
 package com.pdfsegmenter.analyzer;
 
+import com.pdfsegmenter.cache.AnalysisCache;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Counter;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Stage;
 import com.pdfsegmenter.model.CutPoint;
 import com.pdfsegmenter.model.TextBlock;
 import com.pdfsegmenter.model.WhitespaceGap;
+import com.pdfsegmenter.testing.CountingDocumentLoader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -14,9 +19,15 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -110,6 +121,337 @@ class PDFAnalyzerTest {
         assertEquals(1, result.getTotalPages());
     }
     
+    @Test
+    void shouldAnalyzeAlreadyOpenDocument() throws IOException {
+        File testPdf = createTestPdfWithBlocks(tempDir);
+        
+        try (PDDocument doc = PDDocument.load(testPdf)) {
+            PDFAnalyzer.AnalysisResult fromDocument = analyzer.analyze(doc, 2);
+            PDFAnalyzer.AnalysisResult fromFile = analyzer.analyze(testPdf, 2);
+            
+            assertBlocksEqual(fromFile.getTextBlocks(), fromDocument.getTextBlocks());
+            assertEquals(fromFile.getCutPoints().size(), fromDocument.getCutPoints().size());
+            assertEquals(1, doc.getNumberOfPages());
+        }
+    }
+    
+    @Test
+    void shouldProduceSameBlocksInParallelMode() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 12);
+        
+        try (PDDocument doc = PDDocument.load(testPdf)) {
+            List<TextBlock> sequential = analyzer.extractTextBlocks(doc);
+            List<TextBlock> parallel = new PDFAnalyzer(4).extractTextBlocks(doc);
+            
+            assertBlocksEqual(sequential, parallel);
+        }
+    }
+    
+    @Test
+    void shouldProduceSameAnalysisWithShardedExtraction() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 13);
+        PDFAnalyzer.AnalysisResult expected = analyzer.analyze(testPdf, 6);
+        
+        for (int shards : new int[] {2, 3, 20}) {
+            CountingDocumentLoader countingLoader = new CountingDocumentLoader();
+            PDFAnalyzer sharded = new PDFAnalyzer(1, countingLoader);
+            sharded.setExtractionShards(shards);
+            
+            PDFAnalyzer.AnalysisResult actual = sharded.analyze(testPdf, 6);
+            
+            assertEquals(Math.min(shards, 13), countingLoader.getLoads());
+            assertEquals(Math.min(shards, 13) * testPdf.length(), actual.getMetrics().get(Counter.READ_BYTES));
+            assertBlocksEqual(expected.getTextBlocks(), actual.getTextBlocks());
+            assertEquals(expected.getGaps().size(), actual.getGaps().size());
+            for (int i = 0; i < expected.getGaps().size(); i++) {
+                assertEquals(expected.getGaps().get(i).getGapSize(), actual.getGaps().get(i).getGapSize(), "gap " + i);
+            }
+            assertCutPointsEqual(expected.getCutPoints(), actual.getCutPoints());
+            assertEquals(expected.getMetrics().get(Counter.GLYPHS), actual.getMetrics().get(Counter.GLYPHS));
+        }
+    }
+    
+    @Test
+    void shouldBuildSameContentLazilyAndSkipItForGeometryOnly() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 8);
+        
+        try (PDDocument doc = PDDocument.load(testPdf)) {
+            List<TextBlock> text = analyzer.extractTextBlocks(doc);
+            for (int threads : new int[] {1, 3}) {
+                PDFAnalyzer lazy = new PDFAnalyzer(threads);
+                lazy.setBlockContent(PDFAnalyzer.BlockContent.LAZY);
+                PDFAnalyzer geometryOnly = new PDFAnalyzer(threads);
+                geometryOnly.setBlockContent(PDFAnalyzer.BlockContent.NONE);
+                
+                List<TextBlock> lazyBlocks = lazy.extractTextBlocks(doc);
+                List<TextBlock> geometryBlocks = geometryOnly.extractTextBlocks(doc);
+                
+                assertBlocksEqual(text, lazyBlocks);
+                assertEquals(text.size(), geometryBlocks.size());
+                for (int i = 0; i < text.size(); i++) {
+                    assertEquals(text.get(i).getStartY(), geometryBlocks.get(i).getStartY());
+                    assertEquals(text.get(i).getEndY(), geometryBlocks.get(i).getEndY());
+                    assertEquals("", geometryBlocks.get(i).getContent());
+                }
+            }
+        }
+    }
+    
+    @Test
+    void shouldNotServeGeometryOnlyBlocksFromCacheToTextRuns() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 4);
+        AnalysisCache cache = new AnalysisCache(tempDir.resolve("cache").toFile(), 1 << 20);
+        PDFAnalyzer geometryOnly = new PDFAnalyzer();
+        geometryOnly.setBlockContent(PDFAnalyzer.BlockContent.NONE);
+        geometryOnly.setAnalysisCache(cache);
+        PDFAnalyzer text = new PDFAnalyzer();
+        text.setAnalysisCache(cache);
+        
+        geometryOnly.analyze(testPdf, 2);
+        PDFAnalyzer.AnalysisResult result = text.analyze(testPdf, 2);
+        
+        assertEquals(1, result.getMetrics().get(Counter.CACHE_MISSES));
+        assertFalse(result.getTextBlocks().get(0).getContent().isEmpty());
+    }
+    
+    @Test
+    void shouldMeasureCrossPageGapsInCropBox() throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            for (int p = 0; p < 2; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                page.setCropBox(new PDRectangle(0, 100, 612, 592));
+                doc.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(50, 600);
+                    content.showText("Page " + (p + 1) + " text");
+                    content.endText();
+                }
+            }
+            
+            List<TextBlock> blocks = analyzer.extractTextBlocks(doc);
+            List<WhitespaceGap> gaps = analyzer.findWhitespaceGaps(blocks, doc);
+            
+            assertEquals(2, blocks.size());
+            assertEquals(1, gaps.size());
+            // Text positions are measured from the top of the CropBox, so the rest of the page is too.
+            assertEquals(592 - blocks.get(0).getEndY() + blocks.get(1).getStartY(), gaps.get(0).getGapSize(), 0.01f);
+        }
+    }
+    
+    @Test
+    void shouldPickSameCutPointsInStreamingMode() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 12);
+        
+        try (PDDocument doc = PDDocument.load(testPdf)) {
+            for (int numCuts : new int[] {1, 3, 10, 1000}) {
+                PDFAnalyzer.AnalysisResult full = analyzer.analyze(doc, numCuts);
+                for (PDFAnalyzer.BlockContent content : PDFAnalyzer.BlockContent.values()) {
+                    PDFAnalyzer parallel = new PDFAnalyzer(3);
+                    parallel.setBlockContent(content);
+                    PDFAnalyzer.AnalysisResult streaming = parallel.analyzeStreaming(doc, numCuts);
+                    
+                    assertCutPointsEqual(full.getCutPoints(), streaming.getCutPoints());
+                    assertEquals(full.getTextBlocks().size(), streaming.getBlockCount());
+                    assertEquals(full.getTotalPages(), streaming.getTotalPages());
+                    assertTrue(streaming.getTextBlocks().isEmpty());
+                    assertTrue(streaming.getGaps().isEmpty());
+                }
+            }
+        }
+    }
+    
+    @Test
+    void shouldBuildLazyContentWhileGroupingWhenWritingCache() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 4);
+        PDFAnalyzer lazy = new PDFAnalyzer(1);
+        lazy.setBlockContent(PDFAnalyzer.BlockContent.LAZY);
+        lazy.setAnalysisCache(new AnalysisCache(tempDir.resolve("cache").toFile(), 1 << 20));
+        
+        PDFAnalyzer.AnalysisResult result = lazy.analyze(testPdf, 2);
+        
+        assertEquals(1, lazy.idleBuffers());
+        assertBlocksEqual(analyzer.analyze(testPdf, 2).getTextBlocks(), result.getTextBlocks());
+    }
+    
+    @Test
+    void shouldReturnGlyphBuffersToPoolInStreamingModeWhenLazy() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 4);
+        PDFAnalyzer lazy = new PDFAnalyzer(1);
+        lazy.setBlockContent(PDFAnalyzer.BlockContent.LAZY);
+        
+        lazy.analyzeStreaming(testPdf, 2);
+        
+        assertEquals(1, lazy.idleBuffers());
+    }
+    
+    @Test
+    void shouldRecordStageMetrics() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 6);
+        
+        PDFAnalyzer.AnalysisResult sequential = analyzer.analyze(testPdf, 2);
+        PDFAnalyzer.AnalysisResult parallel = new PDFAnalyzer(3).analyzeStreaming(testPdf, 2);
+        
+        for (PDFAnalyzer.AnalysisResult result : List.of(sequential, parallel)) {
+            SegmentationMetrics metrics = result.getMetrics();
+            assertEquals(1, metrics.get(Counter.DOCUMENTS));
+            assertEquals(6, metrics.get(Counter.PAGES));
+            assertEquals(sequential.getTextBlocks().size(), metrics.get(Counter.BLOCKS));
+            assertEquals(sequential.getGaps().size(), metrics.get(Counter.GAPS));
+            assertEquals(testPdf.length(), metrics.get(Counter.READ_BYTES));
+            assertTrue(metrics.get(Counter.GLYPHS) > 0);
+            assertTrue(metrics.getNanos(Stage.LOAD) > 0);
+            assertTrue(metrics.getNanos(Stage.EXTRACT) > 0);
+            assertTrue(metrics.getNanos(Stage.GROUP) > 0);
+            assertEquals(0, metrics.getNanos(Stage.SAVE));
+        }
+        assertEquals(sequential.getMetrics().get(Counter.GLYPHS), parallel.getMetrics().get(Counter.GLYPHS));
+    }
+    
+    @Test
+    void shouldServeRepeatAnalysisFromCacheWithoutLoading() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 8);
+        CountingDocumentLoader countingLoader = new CountingDocumentLoader();
+        PDFAnalyzer cached = new PDFAnalyzer(1, countingLoader);
+        cached.setAnalysisCache(new AnalysisCache(tempDir.resolve("cache").toFile(), 1 << 20));
+        
+        PDFAnalyzer.AnalysisResult first = cached.analyze(testPdf, 2);
+        PDFAnalyzer.AnalysisResult second = cached.analyze(testPdf, 5);
+        PDFAnalyzer.AnalysisResult uncached = analyzer.analyze(testPdf, 5);
+        
+        assertEquals(1, countingLoader.getLoads());
+        assertEquals(1, first.getMetrics().get(Counter.CACHE_MISSES));
+        assertEquals(1, second.getMetrics().get(Counter.CACHE_HITS));
+        assertEquals(0, second.getMetrics().getNanos(Stage.EXTRACT));
+        assertBlocksEqual(uncached.getTextBlocks(), second.getTextBlocks());
+        assertCutPointsEqual(uncached.getCutPoints(), second.getCutPoints());
+        assertEquals(uncached.getTotalPages(), second.getTotalPages());
+        assertEquals(uncached.getGaps().size(), second.getGaps().size());
+    }
+    
+    @Test
+    void shouldMatchSingleThreadedResultsWhenSharedAcrossThreads() throws Exception {
+        int[] pageCounts = {3, 7, 12};
+        int numCuts = 4;
+        List<File> pdfs = new ArrayList<>();
+        List<PDFAnalyzer.AnalysisResult> expected = new ArrayList<>();
+        for (int pages : pageCounts) {
+            File pdf = createMultiPagePdf(Files.createDirectories(tempDir.resolve("doc" + pages)), pages);
+            pdfs.add(pdf);
+            expected.add(new PDFAnalyzer().analyze(pdf, numCuts));
+        }
+        
+        PDFAnalyzer shared = new PDFAnalyzer(2);
+        shared.setExtractionShards(2);
+        shared.setBlockContent(PDFAnalyzer.BlockContent.LAZY);
+        int callers = 8;
+        int iterations = 6;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < callers; c++) {
+                int caller = c;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        int doc = (caller + i) % pdfs.size();
+                        PDFAnalyzer.AnalysisResult want = expected.get(doc);
+                        if (i % 2 == 0) {
+                            PDFAnalyzer.AnalysisResult got = shared.analyze(pdfs.get(doc), numCuts);
+                            assertBlocksEqual(want.getTextBlocks(), got.getTextBlocks());
+                            assertEquals(want.getGaps().size(), got.getGaps().size());
+                            assertCutPointsEqual(want.getCutPoints(), got.getCutPoints());
+                        } else {
+                            PDFAnalyzer.AnalysisResult got = shared.analyzeStreaming(pdfs.get(doc), numCuts);
+                            assertEquals(want.getBlockCount(), got.getBlockCount());
+                            assertCutPointsEqual(want.getCutPoints(), got.getCutPoints());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        // Extractors went back to the pool; no more were made than could be in use at once.
+        assertTrue(shared.idleExtractors() >= 1);
+        assertTrue(shared.idleExtractors() <= callers * shared.getExtractionShards(), "" + shared.idleExtractors());
+    }
+    
+    @Test
+    void shouldReuseExtractorAcrossDocuments() throws IOException {
+        File testPdf = createMultiPagePdf(tempDir, 5);
+        PDFAnalyzer.AnalysisResult first = analyzer.analyze(testPdf, 2);
+        
+        for (int i = 0; i < 3; i++) {
+            PDFAnalyzer.AnalysisResult again = analyzer.analyze(testPdf, 2);
+            assertBlocksEqual(first.getTextBlocks(), again.getTextBlocks());
+            assertEquals(1, analyzer.idleExtractors());
+        }
+    }
+    
+    @Test
+    void shouldRejectNonPositiveThreadCount() {
+        assertThrows(IllegalArgumentException.class, () -> new PDFAnalyzer(0));
+        assertThrows(IllegalArgumentException.class, () -> analyzer.setExtractionShards(0));
+    }
+    
+    static void assertCutPointsEqual(List<CutPoint> expected, List<CutPoint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPageNumber(), actual.get(i).getPageNumber(), "page of cut " + i);
+            assertEquals(expected.get(i).getYPosition(), actual.get(i).getYPosition(), "y of cut " + i);
+            assertEquals(expected.get(i).getBlockIndex(), actual.get(i).getBlockIndex(), "block of cut " + i);
+        }
+    }
+    
+    static void assertBlocksEqual(List<TextBlock> expected, List<TextBlock> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TextBlock e = expected.get(i);
+            TextBlock a = actual.get(i);
+            assertEquals(e.getPageNumber(), a.getPageNumber(), "page of block " + i);
+            assertEquals(e.getStartY(), a.getStartY(), "startY of block " + i);
+            assertEquals(e.getEndY(), a.getEndY(), "endY of block " + i);
+            assertEquals(e.getContent(), a.getContent(), "content of block " + i);
+        }
+    }
+    
+    static File createMultiPagePdf(Path dir, int pageCount) throws IOException {
+        File pdfFile = dir.resolve("multipage.pdf").toFile();
+        
+        try (PDDocument doc = new PDDocument()) {
+            for (int p = 0; p < pageCount; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 11);
+                    content.newLineAtOffset(50, 720);
+                    
+                    for (int line = 0; line < 30; line++) {
+                        content.showText("Page " + (p + 1) + " line " + (line + 1) + " sample text");
+                        content.newLineAtOffset(0, (line + p) % 7 == 6 ? -40 : -14);
+                    }
+                    
+                    content.endText();
+                }
+            }
+            
+            doc.save(pdfFile);
+        }
+        
+        return pdfFile;
+    }
+    
     private File createTestPdfWithBlocks(Path dir) throws IOException {
         File pdfFile = dir.resolve("test.pdf").toFile();
         
@@ -0,0 +1,53 @@
+package com.pdfsegmenter.analyzer;
+
+import com.pdfsegmenter.benchmark.SyntheticPdf;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextExtractionBenchmark {
+    
+    @Param({"NONE", "VECTOR", "INLINE_IMAGES", "SCANNED"})
+    SyntheticPdf.Artwork artwork;
+    
+    @Param({"true", "false"})
+    boolean textOnly;
+    
+    private final GlyphBufferPool pool = new GlyphBufferPool();
+    private final LongAdder glyphs = new LongAdder();
+    private PDDocument document;
+    private TextPositionExtractor extractor;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = Files.createDirectories(new File("target/benchmark-pdfs").toPath()).toFile();
+        document = PDDocument.load(SyntheticPdf.create(dir, SyntheticPdf.Layout.REPORT, 20, artwork));
+        extractor = new TextPositionExtractor(pool, (pageIndex, pageGlyphs) -> {
+            glyphs.add(pageGlyphs.size());
+            pool.release(pageGlyphs);
+        });
+        extractor.setTextOnly(textOnly);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        document.close();
+    }
+    
+    @Benchmark
+    public long extract() throws IOException {
+        extractor.extract(document);
+        return glyphs.sum();
+    }
+}
@@ -0,0 +1,137 @@
+package com.pdfsegmenter.analyzer;
+
+import com.pdfsegmenter.benchmark.SyntheticPdf;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.util.Matrix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextOperatorFilterTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void shouldKeepTextCommandsAndDropPathsAndInlineImages() {
+        String content = "q 1 0 0 1 5 5 cm 10 10 m 20 20 l 30 30 40 40 50 50 c S 0.5 g\n"
+                + "BI /W 2 /H 1 /BPC 8 /CS /G ID \u0000\u00ff EI Q\n"
+                + "BT /F1 12 Tf [(a\\) b) -250 <4142>] TJ 0 -14 Td (EI m l) Tj ET\n"
+                + "/Fm1 Do % 1 2 m\n0 0 612 792 re W n Q";
+        
+        assertEquals("q 1 0 0 1 5 5 cm Q BT /F1 12 Tf [(a\\) b) -250 <4142>] TJ 0 -14 Td (EI m l) Tj ET /Fm1 Do Q",
+                filter(content));
+    }
+    
+    @Test
+    void shouldReturnNullWhenNothingCanShowGlyphs() {
+        byte[] content = "q 0 0 m 100 100 l S BT /F1 12 Tf ET Q".getBytes(StandardCharsets.ISO_8859_1);
+        
+        assertNull(TextOperatorFilter.filter(content));
+    }
+    
+    @Test
+    void shouldLeaveUnparseableContentUnchanged() {
+        byte[] unterminated = "BT (abc Tj ET".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] strayBracket = "BT ) Tj ET".getBytes(StandardCharsets.ISO_8859_1);
+        
+        assertSame(unterminated, TextOperatorFilter.filter(unterminated));
+        assertSame(strayBracket, TextOperatorFilter.filter(strayBracket));
+    }
+    
+    @ParameterizedTest
+    @EnumSource(SyntheticPdf.Artwork.class)
+    void shouldExtractSameGlyphsAsFullEngine(SyntheticPdf.Artwork artwork) throws IOException {
+        File pdf = SyntheticPdf.create(tempDir.toFile(), SyntheticPdf.Layout.TWO_COLUMN, 3, artwork);
+        
+        try (PDDocument document = PDDocument.load(pdf)) {
+            List<String> glyphs = glyphs(document, true);
+            assertFalse(glyphs.isEmpty());
+            assertEquals(glyphs(document, false), glyphs);
+        }
+    }
+    
+    @Test
+    void shouldExtractTextInsideFormXObjects() throws IOException {
+        File pdf = tempDir.resolve("forms.pdf").toFile();
+        try (PDDocument doc = new PDDocument()) {
+            PDFormXObject form = new PDFormXObject(doc);
+            form.setBBox(new PDRectangle(300, 100));
+            form.setResources(new PDResources());
+            COSName font = form.getResources().add(PDType1Font.TIMES_ROMAN);
+            writeContent(form, "0 0 300 100 re S BT /" + font.getName() + " 10 Tf 5 80 Td (Letterhead inside a form) Tj ET");
+            PDFormXObject artOnly = new PDFormXObject(doc);
+            artOnly.setBBox(new PDRectangle(100, 100));
+            writeContent(artOnly, "10 10 80 80 re f");
+            for (int p = 0; p < 2; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.saveGraphicsState();
+                    content.transform(new Matrix(1, 0, 0, 1, 50, 650 - 100 * p));
+                    content.drawForm(form);
+                    content.restoreGraphicsState();
+                    content.drawForm(artOnly);
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(50, 400);
+                    content.showText("Body on page " + (p + 1));
+                    content.endText();
+                }
+            }
+            doc.save(pdf);
+        }
+        
+        try (PDDocument document = PDDocument.load(pdf)) {
+            List<String> glyphs = glyphs(document, true);
+            assertEquals(glyphs(document, false), glyphs);
+            assertTrue(glyphs.stream().anyMatch(glyph -> glyph.endsWith(" L")));
+        }
+    }
+    
+    private static void writeContent(PDFormXObject form, String content) throws IOException {
+        try (OutputStream out = form.getCOSObject().createOutputStream()) {
+            out.write(content.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+    
+    private static String filter(String content) {
+        byte[] filtered = TextOperatorFilter.filter(content.getBytes(StandardCharsets.ISO_8859_1));
+        return new String(filtered, StandardCharsets.ISO_8859_1).replaceAll("\\s+", " ").trim();
+    }
+    
+    private static List<String> glyphs(PDDocument document, boolean textOnly) throws IOException {
+        List<String> glyphs = new ArrayList<>();
+        GlyphBufferPool pool = new GlyphBufferPool();
+        TextPositionExtractor extractor = new TextPositionExtractor(pool, (pageIndex, buffer) -> {
+            for (int i = 0; i < buffer.size(); i++) {
+                StringBuilder text = new StringBuilder();
+                buffer.appendText(i, text);
+                glyphs.add(pageIndex + " " + buffer.getX(i) + " " + buffer.getY(i) + " " + buffer.getWidth(i)
+                        + " " + buffer.getHeight(i) + " " + text);
+            }
+            pool.release(buffer);
+        });
+        extractor.setTextOnly(textOnly);
+        extractor.extract(document);
+        return glyphs;
+    }
+}
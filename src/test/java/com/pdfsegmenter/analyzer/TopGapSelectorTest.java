@@ -0,0 +1,88 @@
+package com.pdfsegmenter.analyzer;
+
+import com.pdfsegmenter.model.WhitespaceGap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopGapSelectorTest {
+    
+    @Test
+    void shouldReturnLargestGapsFirst() {
+        TopGapSelector selector = new TopGapSelector(2);
+        selector.offer(new WhitespaceGap(10f, 100f, 0, 0));
+        selector.offer(new WhitespaceGap(50f, 200f, 0, 1));
+        selector.offer(new WhitespaceGap(30f, 300f, 0, 2));
+        
+        List<WhitespaceGap> ranked = selector.drainRanked();
+        
+        assertEquals(2, ranked.size());
+        assertEquals(50f, ranked.get(0).getGapSize());
+        assertEquals(30f, ranked.get(1).getGapSize());
+    }
+    
+    @Test
+    void shouldKeepEarlierGapOnTie() {
+        TopGapSelector selector = new TopGapSelector(2);
+        selector.offer(new WhitespaceGap(20f, 100f, 0, 0));
+        selector.offer(new WhitespaceGap(20f, 200f, 0, 1));
+        selector.offer(new WhitespaceGap(20f, 300f, 0, 2));
+        
+        List<WhitespaceGap> ranked = selector.drainRanked();
+        
+        assertEquals(0, ranked.get(0).getBlockIndexBefore());
+        assertEquals(1, ranked.get(1).getBlockIndexBefore());
+    }
+    
+    @Test
+    void shouldHoldNothingWithZeroCapacity() {
+        TopGapSelector selector = new TopGapSelector(0);
+        selector.offer(new WhitespaceGap(20f, 100f, 0, 0));
+        
+        assertTrue(selector.drainRanked().isEmpty());
+    }
+    
+    @ParameterizedTest
+    @ValueSource(longs = {3L, 17L, 256L, 4096L})
+    void shouldMatchStableFullSort(long seed) {
+        Random random = new Random(seed);
+        
+        for (int round = 0; round < 100; round++) {
+            int count = 1 + random.nextInt(500);
+            int k = 1 + random.nextInt(count + 5);
+            List<WhitespaceGap> gaps = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                float size = random.nextBoolean() ? random.nextInt(20) : random.nextFloat() * 100f;
+                gaps.add(new WhitespaceGap(size, i, i / 10, i));
+            }
+            
+            List<WhitespaceGap> sorted = new ArrayList<>(gaps);
+            Collections.sort(sorted);
+            List<WhitespaceGap> expected = sorted.subList(0, Math.min(k, count));
+            
+            TopGapSelector selector = new TopGapSelector(k);
+            gaps.forEach(selector::offer);
+            
+            List<WhitespaceGap> ranked = selector.drainRanked();
+            
+            // Ranked gaps are rebuilt from columns, so compare fields rather than instances.
+            assertEquals(expected.size(), ranked.size(), "seed " + seed + ", round " + round);
+            for (int i = 0; i < expected.size(); i++) {
+                WhitespaceGap want = expected.get(i);
+                WhitespaceGap got = ranked.get(i);
+                String message = "seed " + seed + ", round " + round + ", rank " + i;
+                assertEquals(want.getGapSize(), got.getGapSize(), message);
+                assertEquals(want.getYPosition(), got.getYPosition(), message);
+                assertEquals(want.getPageNumber(), got.getPageNumber(), message);
+                assertEquals(want.getBlockIndexBefore(), got.getBlockIndexBefore(), message);
+            }
+        }
+    }
+}
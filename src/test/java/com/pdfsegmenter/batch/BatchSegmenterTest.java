@@ -0,0 +1,219 @@
+package com.pdfsegmenter.batch;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.io.DocumentLoader;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Counter;
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import com.pdfsegmenter.testing.CountingDocumentLoader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.pdfsegmenter.testing.TestPdfs.createSectionPdf;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSegmenterTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void shouldSegmentEveryFileAndReportFailuresWithoutStopping() throws Exception {
+        File inputDir = tempDir.resolve("in").toFile();
+        createSectionPdf(new File(inputDir, "a.pdf"), 4);
+        Files.write(inputDir.toPath().resolve("broken.pdf"), "not a pdf".getBytes(StandardCharsets.US_ASCII));
+        createSectionPdf(new File(inputDir, "c.pdf"), 3);
+        File outputRoot = tempDir.resolve("out").toFile();
+        
+        BatchSegmenter batch = new BatchSegmenter(new PDFSegmenter());
+        batch.setLoadThreads(2);
+        batch.setAnalyzeThreads(2);
+        batch.setWriteThreads(2);
+        List<BatchResult> results = batch.run(BatchInputs.fromDirectory(inputDir), 2, outputRoot);
+        
+        assertEquals(3, results.size());
+        assertEquals("a.pdf", results.get(0).getInputFile().getName());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(3, results.get(0).getSegments().size());
+        
+        assertEquals("broken.pdf", results.get(1).getInputFile().getName());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("load", results.get(1).getStage());
+        assertNotNull(results.get(1).getError());
+        
+        assertTrue(results.get(2).isSuccess());
+        for (File segment : results.get(2).getSegments()) {
+            assertTrue(segment.isFile());
+            assertEquals(new File(outputRoot, "c_segments"), segment.getParentFile());
+        }
+        
+        assertEquals(1, results.get(1).getMetrics().get(Counter.FAILED_DOCUMENTS));
+        assertEquals(4, results.get(0).getMetrics().get(Counter.PAGES));
+        SegmentationMetrics totals = BatchSegmenter.totals(results);
+        assertEquals(2, totals.get(Counter.DOCUMENTS));
+        assertEquals(1, totals.get(Counter.FAILED_DOCUMENTS));
+        assertEquals(7, totals.get(Counter.PAGES));
+        
+        File metricsFile = new File(outputRoot, "metrics.jsonl");
+        BatchSegmenter.writeMetricsJson(results, metricsFile);
+        List<String> metricsLines = Files.readAllLines(metricsFile.toPath());
+        assertEquals(3, metricsLines.size());
+        assertTrue(metricsLines.get(1).startsWith("{\"input\":\"" + results.get(1).getInputFile().getPath() + "\",\"status\":\"FAILED\""));
+        assertTrue(metricsLines.get(0).contains("\"metrics\":{\"documents\":1,"));
+        
+        File summary = new File(outputRoot, "summary.tsv");
+        BatchSegmenter.writeSummary(results, summary);
+        List<String> lines = Files.readAllLines(summary.toPath());
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(1).contains("a.pdf\tSUCCESS\t3\t"));
+        assertTrue(lines.get(2).contains("broken.pdf\tFAILED\t0\t"));
+        assertTrue(lines.get(2).contains("\tload\t"));
+    }
+    
+    @Test
+    void shouldMatchSingleFileSegmentation() throws Exception {
+        File input = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 5);
+        
+        List<File> expected = new PDFSegmenter().segment(input, 3, tempDir.resolve("single").toFile());
+        List<BatchResult> results = new BatchSegmenter(new PDFSegmenter())
+                .run(List.of(input), 3, tempDir.resolve("batch").toFile());
+        
+        List<File> actual = results.get(0).getSegments();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(pageCount(expected.get(i)), pageCount(actual.get(i)));
+        }
+    }
+    
+    @Test
+    void shouldGiveInputsWithTheSameNameSeparateOutputDirectories() throws Exception {
+        File first = createSectionPdf(tempDir.resolve("x/report.pdf").toFile(), 2);
+        File second = createSectionPdf(tempDir.resolve("y/report.pdf").toFile(), 2);
+        File outputRoot = tempDir.resolve("out").toFile();
+        
+        List<BatchResult> results = new BatchSegmenter(new PDFSegmenter()).run(List.of(first, second), 1, outputRoot);
+        
+        assertEquals(new File(outputRoot, "report_segments"), results.get(0).getOutputDir());
+        assertEquals(new File(outputRoot, "report_segments_2"), results.get(1).getOutputDir());
+        assertTrue(results.get(1).getSegments().get(0).isFile());
+    }
+    
+    @Test
+    void shouldBoundDocumentsInFlight() throws Exception {
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            inputs.add(createSectionPdf(tempDir.resolve("in/doc" + i + ".pdf").toFile(), 2));
+        }
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        DocumentLoader loader = new CountingDocumentLoader(
+                loads -> maxInFlight.accumulateAndGet(loads - completed.get(), Math::max));
+        
+        BatchSegmenter batch = new BatchSegmenter(new PDFSegmenter(new PDFAnalyzer(), loader));
+        batch.setQueueCapacity(1);
+        batch.setListener(result -> {
+            completed.incrementAndGet();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        List<BatchResult> results = batch.run(inputs, 1, tempDir.resolve("out").toFile());
+        
+        assertTrue(results.stream().allMatch(BatchResult::isSuccess));
+        // One document per load thread, plus running and queued documents in the analyze and write stages.
+        assertTrue(maxInFlight.get() <= 1 + 2 + 2, "max in flight " + maxInFlight.get());
+    }
+    
+    @Test
+    void shouldFinishRunAndCloseDocumentWhenStageThrowsError() throws Exception {
+        File good = createSectionPdf(tempDir.resolve("in/good.pdf").toFile(), 3);
+        File bad = createSectionPdf(tempDir.resolve("in/bad.pdf").toFile(), 3);
+        List<PDDocument> loaded = new CopyOnWriteArrayList<>();
+        DocumentLoader loader = new DocumentLoader() {
+            @Override
+            public PDDocument load(File file) throws IOException {
+                PDDocument document = super.load(file);
+                loaded.add(document);
+                return document;
+            }
+        };
+        PDFAnalyzer analyzer = new PDFAnalyzer() {
+            @Override
+            public AnalysisResult analyze(File pdfFile, PDDocument document, int numCuts,
+                                          SegmentationMetrics metrics) throws IOException {
+                if (pdfFile.equals(bad)) {
+                    throw new StackOverflowError();
+                }
+                return super.analyze(pdfFile, document, numCuts, metrics);
+            }
+        };
+        BatchSegmenter batch = new BatchSegmenter(new PDFSegmenter(analyzer, loader));
+        
+        List<BatchResult> results = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> batch.run(List.of(bad, good), 1, tempDir.resolve("out").toFile()));
+        
+        assertFalse(results.get(0).isSuccess());
+        assertEquals("analyze", results.get(0).getStage());
+        assertInstanceOf(StackOverflowError.class, results.get(0).getError());
+        assertTrue(results.get(1).isSuccess());
+        assertEquals(2, loaded.size());
+        for (PDDocument document : loaded) {
+            assertTrue(document.getDocument().isClosed());
+        }
+    }
+    
+    @Test
+    void shouldRejectInvalidSettings() {
+        BatchSegmenter batch = new BatchSegmenter(new PDFSegmenter());
+        
+        assertThrows(IllegalArgumentException.class, () -> batch.setLoadThreads(0));
+        assertThrows(IllegalArgumentException.class, () -> batch.setAnalyzeThreads(0));
+        assertThrows(IllegalArgumentException.class, () -> batch.setWriteThreads(0));
+        assertThrows(IllegalArgumentException.class, () -> batch.setQueueCapacity(0));
+        assertThrows(IllegalArgumentException.class, () -> batch.run(List.of(), 0, tempDir.toFile()));
+    }
+    
+    @Test
+    void shouldResolveGlobsAndFileLists() throws Exception {
+        File a = createSectionPdf(tempDir.resolve("docs/a.pdf").toFile(), 1);
+        File b = createSectionPdf(tempDir.resolve("docs/nested/b.pdf").toFile(), 1);
+        Files.createFile(tempDir.resolve("docs/notes.txt"));
+        
+        assertEquals(List.of(a.toPath()), paths(BatchInputs.fromGlob(tempDir + "/docs/*.pdf")));
+        assertEquals(List.of(a.toPath(), b.toPath()), paths(BatchInputs.fromGlob(tempDir + "/docs/**.pdf")));
+        assertEquals(List.of(a.toPath(), b.toPath()), paths(BatchInputs.resolve(tempDir + "/docs", null)));
+        
+        List<File> listed = BatchInputs.resolve("-", new StringReader(b + "\n\n# skipped\n" + a + "\n"));
+        assertEquals(List.of(b, a), listed);
+    }
+    
+    private static List<Path> paths(List<File> files) {
+        List<Path> paths = new ArrayList<>();
+        for (File file : files) {
+            paths.add(file.toPath().toAbsolutePath());
+        }
+        return paths;
+    }
+    
+    private static int pageCount(File pdf) throws IOException {
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            return doc.getNumberOfPages();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.pdfsegmenter.benchmark;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.model.CutPoint;
+import com.pdfsegmenter.model.TextBlock;
+import com.pdfsegmenter.model.WhitespaceGap;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+    
+    @Param({"REPORT", "TWO_COLUMN", "DENSE_FOOTNOTES"})
+    SyntheticPdf.Layout layout;
+    
+    @Param({"20", "200"})
+    int pages;
+    
+    private final PDFAnalyzer analyzer = new PDFAnalyzer();
+    private File pdfFile;
+    private PDDocument document;
+    private List<TextBlock> blocks;
+    private List<WhitespaceGap> gaps;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = Files.createDirectories(new File("target/benchmark-pdfs").toPath()).toFile();
+        pdfFile = SyntheticPdf.create(dir, layout, pages);
+        document = PDDocument.load(pdfFile);
+        blocks = analyzer.extractTextBlocks(document);
+        gaps = analyzer.findWhitespaceGaps(blocks, document);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        document.close();
+    }
+    
+    @Benchmark
+    public int loadDocument() throws IOException {
+        try (PDDocument doc = PDDocument.load(pdfFile)) {
+            return doc.getNumberOfPages();
+        }
+    }
+    
+    @Benchmark
+    public List<TextBlock> extractTextBlocks() throws IOException {
+        return analyzer.extractTextBlocks(document);
+    }
+    
+    @Benchmark
+    public List<WhitespaceGap> findWhitespaceGaps() {
+        return analyzer.findWhitespaceGaps(blocks, document);
+    }
+    
+    @Benchmark
+    public List<CutPoint> determineCutPoints() {
+        return analyzer.determineCutPoints(gaps, 10);
+    }
+    
+    @Benchmark
+    public PDFAnalyzer.AnalysisResult analyze() throws IOException {
+        return analyzer.analyze(document, 10);
+    }
+}
@@ -0,0 +1,70 @@
+package com.pdfsegmenter.benchmark;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.model.CutPoint;
+import com.pdfsegmenter.model.GapColumns;
+import com.pdfsegmenter.model.WhitespaceGap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CutSelectionBenchmark {
+    
+    @Param({"1000", "10000", "100000", "1000000"})
+    int gapCount;
+    
+    @Param({"10", "100"})
+    int numCuts;
+    
+    private final PDFAnalyzer analyzer = new PDFAnalyzer();
+    private List<WhitespaceGap> gaps;
+    private GapColumns gapColumns;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        gaps = new ArrayList<>(gapCount);
+        for (int i = 0; i < gapCount; i++) {
+            float size = random.nextInt(4) == 0 ? 20f + random.nextInt(40) : random.nextFloat() * 30f;
+            gaps.add(new WhitespaceGap(size, random.nextFloat() * 792f, i / 50, i));
+        }
+        gapColumns = GapColumns.of(gaps);
+    }
+    
+    @Benchmark
+    public List<CutPoint> topKSelection() {
+        return analyzer.determineCutPoints(gaps, numCuts);
+    }
+    
+    // Same selection over the columnar gaps PDFAnalyzer produces.
+    @Benchmark
+    public List<CutPoint> topKSelectionColumnar() {
+        return analyzer.determineCutPoints(gapColumns, numCuts);
+    }
+    
+    @Benchmark
+    public List<CutPoint> fullSort() {
+        List<WhitespaceGap> sortedGaps = new ArrayList<>(gaps);
+        Collections.sort(sortedGaps);
+        
+        int actualCuts = Math.min(numCuts, sortedGaps.size());
+        List<CutPoint> cutPoints = new ArrayList<>();
+        for (int i = 0; i < actualCuts; i++) {
+            WhitespaceGap gap = sortedGaps.get(i);
+            cutPoints.add(new CutPoint(gap.getPageNumber(), gap.getYPosition(), gap.getBlockIndexBefore()));
+        }
+        
+        Collections.sort(cutPoints);
+        return cutPoints;
+    }
+}
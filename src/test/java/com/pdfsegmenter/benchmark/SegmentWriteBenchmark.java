@@ -0,0 +1,81 @@
+package com.pdfsegmenter.benchmark;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Writing segments only: the source is loaded and analyzed once per trial, so the score is the time to copy the
+// pages of every segment and save them. Total output size is reported alongside as outputBytes.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentWriteBenchmark {
+    
+    @Param({"NONE", "SCANNED"})
+    SyntheticPdf.Artwork artwork;
+    
+    @Param({"200"})
+    int pages;
+    
+    @Param({"1", "10", "50", "199"})
+    int numCuts;
+    
+    private final PDFSegmenter segmenter = new PDFSegmenter();
+    private File pdfFile;
+    private PDDocument document;
+    private PDFAnalyzer.AnalysisResult analysis;
+    private File outputDir;
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output {
+        // Bytes written by the last run; every run of a trial writes the same files.
+        public long outputBytes;
+    }
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = Files.createDirectories(new File("target/benchmark-pdfs").toPath()).toFile();
+        pdfFile = SyntheticPdf.create(dir, SyntheticPdf.Layout.REPORT, pages, artwork);
+        document = PDDocument.load(pdfFile);
+        analysis = segmenter.analyze(pdfFile, document, numCuts, new SegmentationMetrics());
+        outputDir = Files.createTempDirectory("segment-write-benchmark").toFile();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        document.close();
+    }
+    
+    @Setup(Level.Invocation)
+    public void cleanOutput() {
+        File[] outputs = outputDir.listFiles();
+        if (outputs != null) {
+            for (File output : outputs) {
+                output.delete();
+            }
+        }
+    }
+    
+    @Benchmark
+    public List<File> writeSegments(Output output) throws IOException {
+        List<File> files = segmenter.writeSegments(document, pdfFile, analysis, outputDir);
+        long bytes = 0;
+        for (File file : files) {
+            bytes += file.length();
+        }
+        output.outputBytes = bytes;
+        return files;
+    }
+}
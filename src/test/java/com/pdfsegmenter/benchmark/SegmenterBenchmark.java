@@ -0,0 +1,54 @@
+package com.pdfsegmenter.benchmark;
+
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmenterBenchmark {
+    
+    @Param({"REPORT", "TWO_COLUMN"})
+    SyntheticPdf.Layout layout;
+    
+    @Param({"20", "200"})
+    int pages;
+    
+    @Param({"5", "50"})
+    int numCuts;
+    
+    private final PDFSegmenter segmenter = new PDFSegmenter();
+    private File pdfFile;
+    private File outputDir;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = Files.createDirectories(new File("target/benchmark-pdfs").toPath()).toFile();
+        pdfFile = SyntheticPdf.create(dir, layout, pages);
+        outputDir = Files.createTempDirectory("segmenter-benchmark").toFile();
+    }
+    
+    @Setup(Level.Invocation)
+    public void cleanOutput() {
+        File[] outputs = outputDir.listFiles();
+        if (outputs != null) {
+            for (File output : outputs) {
+                output.delete();
+            }
+        }
+    }
+    
+    @Benchmark
+    public List<File> segment() throws IOException {
+        return segmenter.segment(pdfFile, numCuts, outputDir);
+    }
+}
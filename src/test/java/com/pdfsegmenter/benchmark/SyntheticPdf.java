@@ -0,0 +1,181 @@
+package com.pdfsegmenter.benchmark;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDInlineImage;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public final class SyntheticPdf {
+    
+    private static final String[] WORDS = {
+        "segment", "whitespace", "analysis", "document", "page", "block", "gap", "layout",
+        "contract", "clause", "section", "table", "figure", "appendix", "party", "term"
+    };
+    private static final float MARGIN = 50f;
+    private static final float COLUMN_GUTTER = 18f;
+    
+    public enum Layout {
+        SPARSE(1, 14f, 12, 3),
+        REPORT(1, 11f, 40, 6),
+        TWO_COLUMN(2, 9f, 60, 8),
+        DENSE_FOOTNOTES(3, 6f, 110, 12);
+        
+        final int columns;
+        final float fontSize;
+        final int linesPerColumn;
+        final int linesPerParagraph;
+        
+        Layout(int columns, float fontSize, int linesPerColumn, int linesPerParagraph) {
+            this.columns = columns;
+            this.fontSize = fontSize;
+            this.linesPerColumn = linesPerColumn;
+            this.linesPerParagraph = linesPerParagraph;
+        }
+    }
+    
+    // Non-text content drawn under the text of every page.
+    public enum Artwork {
+        NONE,
+        // Brochure-style vector art: a few thousand path segments, fills and colour changes per page
+        VECTOR,
+        // Raw RGB images embedded in the content stream with BI/ID/EI
+        INLINE_IMAGES,
+        // A full-page scan as an image XObject with the text layer on top
+        SCANNED
+    }
+    
+    private SyntheticPdf() {
+    }
+    
+    public static File create(File dir, Layout layout, int pages) throws IOException {
+        return create(dir, layout, pages, Artwork.NONE);
+    }
+    
+    public static File create(File dir, Layout layout, int pages, Artwork artwork) throws IOException {
+        String suffix = artwork == Artwork.NONE ? "" : "_" + artwork.name().toLowerCase();
+        File pdfFile = new File(dir, layout.name().toLowerCase() + "_" + pages + suffix + ".pdf");
+        if (pdfFile.isFile()) {
+            return pdfFile;
+        }
+        
+        Random random = new Random(pages * 31L + layout.ordinal());
+        try (PDDocument doc = new PDDocument()) {
+            PDImageXObject scan = artwork == Artwork.SCANNED ? scanImage(doc, random) : null;
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    writeArtwork(content, page, artwork, scan, random);
+                    writeText(content, page, layout, random);
+                }
+            }
+            doc.save(pdfFile);
+        }
+        return pdfFile;
+    }
+    
+    private static void writeArtwork(PDPageContentStream content, PDPage page, Artwork artwork, PDImageXObject scan,
+                                     Random random) throws IOException {
+        PDRectangle box = page.getMediaBox();
+        switch (artwork) {
+            case VECTOR:
+                for (int shape = 0; shape < 150; shape++) {
+                    content.setNonStrokingColor(random.nextFloat(), random.nextFloat(), random.nextFloat());
+                    content.moveTo(random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight());
+                    for (int segment = 0; segment < 20; segment++) {
+                        content.curveTo(random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight(),
+                                random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight(),
+                                random.nextFloat() * box.getWidth(), random.nextFloat() * box.getHeight());
+                    }
+                    content.closePath();
+                    content.fill();
+                }
+                break;
+            case INLINE_IMAGES:
+                for (int i = 0; i < 3; i++) {
+                    content.drawImage(inlineImage(random, 120, 120), MARGIN + i * 170, MARGIN, 150, 150);
+                }
+                break;
+            case SCANNED:
+                content.drawImage(scan, 0, 0, box.getWidth(), box.getHeight());
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private static PDInlineImage inlineImage(Random random, int width, int height) throws IOException {
+        COSDictionary parameters = new COSDictionary();
+        parameters.setInt(COSName.W, width);
+        parameters.setInt(COSName.H, height);
+        parameters.setInt(COSName.BPC, 8);
+        parameters.setItem(COSName.CS, COSName.getPDFName("RGB"));
+        byte[] data = new byte[width * height * 3];
+        random.nextBytes(data);
+        return new PDInlineImage(parameters, data, null);
+    }
+    
+    private static PDImageXObject scanImage(PDDocument doc, Random random) throws IOException {
+        BufferedImage image = new BufferedImage(425, 550, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int shade = 200 + random.nextInt(56);
+                image.setRGB(x, y, shade << 16 | shade << 8 | shade);
+            }
+        }
+        return LosslessFactory.createFromImage(doc, image);
+    }
+    
+    private static void writeText(PDPageContentStream content, PDPage page, Layout layout, Random random)
+            throws IOException {
+        PDRectangle box = page.getMediaBox();
+        float columnWidth = (box.getWidth() - 2 * MARGIN - (layout.columns - 1) * COLUMN_GUTTER) / layout.columns;
+        float leading = layout.fontSize * 1.2f;
+        float usableHeight = box.getHeight() - 2 * MARGIN;
+        int charsPerLine = Math.max(8, (int) (columnWidth / (layout.fontSize * 0.5f)));
+        
+        for (int c = 0; c < layout.columns; c++) {
+            content.beginText();
+            content.setFont(PDType1Font.HELVETICA, layout.fontSize);
+            content.newLineAtOffset(MARGIN + c * (columnWidth + COLUMN_GUTTER), box.getHeight() - MARGIN);
+            
+            float used = 0;
+            for (int line = 0; line < layout.linesPerColumn && used < usableHeight; line++) {
+                content.showText(randomLine(random, charsPerLine));
+                float step = leading;
+                if (line % layout.linesPerParagraph == layout.linesPerParagraph - 1) {
+                    step += leading * (1 + random.nextInt(4));
+                }
+                content.newLineAtOffset(0, -step);
+                used += step;
+            }
+            
+            content.endText();
+        }
+    }
+    
+    private static String randomLine(Random random, int maxChars) {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (sb.length() + word.length() + 1 > maxChars) {
+                return sb.toString();
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(word);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.pdfsegmenter.cache;
+
+import com.pdfsegmenter.model.TextBlock;
+import com.pdfsegmenter.model.WhitespaceGap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisCacheTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void shouldRoundTripBlocksAndGaps() throws IOException {
+        AnalysisCache cache = new AnalysisCache(tempDir.resolve("cache").toFile(), 1 << 20);
+        String longContent = "x".repeat(70_000) + " é中";
+        CachedAnalysis analysis = new CachedAnalysis(
+                List.of(new TextBlock(10f, 20.5f, 0, "Heading"), new TextBlock(100f, 180f, 1, longContent)),
+                List.of(new WhitespaceGap(79.5f, 20.5f, 0, 0)),
+                2);
+        
+        cache.put("key", analysis);
+        CachedAnalysis loaded = cache.get("key");
+        
+        assertNotNull(loaded);
+        assertEquals(2, loaded.getTotalPages());
+        assertEquals(2, loaded.getTextBlocks().size());
+        TextBlock block = loaded.getTextBlocks().get(1);
+        assertEquals(100f, block.getStartY());
+        assertEquals(180f, block.getEndY());
+        assertEquals(1, block.getPageNumber());
+        assertEquals(longContent, block.getContent());
+        WhitespaceGap gap = loaded.getGaps().get(0);
+        assertEquals(79.5f, gap.getGapSize());
+        assertEquals(20.5f, gap.getYPosition());
+        assertEquals(0, gap.getPageNumber());
+        assertEquals(0, gap.getBlockIndexBefore());
+    }
+    
+    @Test
+    void shouldMissForUnknownKey() throws IOException {
+        AnalysisCache cache = new AnalysisCache(tempDir.toFile(), 1 << 20);
+        
+        assertNull(cache.get("missing"));
+    }
+    
+    @Test
+    void shouldKeyByContentAndParameters() throws IOException {
+        AnalysisCache cache = new AnalysisCache(tempDir.resolve("cache").toFile(), 1 << 20);
+        File first = tempDir.resolve("a.pdf").toFile();
+        File copy = tempDir.resolve("b.pdf").toFile();
+        File other = tempDir.resolve("c.pdf").toFile();
+        Files.write(first.toPath(), new byte[] {1, 2, 3});
+        Files.write(copy.toPath(), new byte[] {1, 2, 3});
+        Files.write(other.toPath(), new byte[] {1, 2, 4});
+        
+        String key = cache.key(first, "p=1");
+        
+        assertEquals(64, key.length());
+        assertEquals(key, cache.key(copy, "p=1"));
+        assertNotEquals(key, cache.key(other, "p=1"));
+        assertNotEquals(key, cache.key(first, "p=2"));
+    }
+    
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesAboveMaxSize() throws IOException {
+        File directory = tempDir.resolve("cache").toFile();
+        AnalysisCache unbounded = new AnalysisCache(directory, Long.MAX_VALUE);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            unbounded.put("entry" + i, sampleAnalysis(i));
+            Files.setLastModifiedTime(directory.toPath().resolve("entry" + i + ".analysis"),
+                    FileTime.fromMillis(now - 100_000 + i * 1_000));
+        }
+        long entrySize = Files.size(directory.toPath().resolve("entry0.analysis"));
+        
+        // Reading entry0 makes it the most recently used, so entry1 and entry2 go first.
+        assertNotNull(unbounded.get("entry0"));
+        new AnalysisCache(directory, entrySize * 2).evict();
+        
+        assertNotNull(unbounded.get("entry0"));
+        assertNull(unbounded.get("entry1"));
+        assertNull(unbounded.get("entry2"));
+        assertNotNull(unbounded.get("entry3"));
+    }
+    
+    @Test
+    void shouldTreatCorruptEntryAsMissAndRemoveIt() throws IOException {
+        AnalysisCache cache = new AnalysisCache(tempDir.toFile(), 1 << 20);
+        cache.put("key", sampleAnalysis(0));
+        Path entry = tempDir.resolve("key.analysis");
+        byte[] bytes = Files.readAllBytes(entry);
+        bytes[12] = (byte) 0x7f;
+        Files.write(entry, bytes);
+        
+        assertNull(cache.get("key"));
+        assertFalse(Files.exists(entry));
+    }
+    
+    @Test
+    void shouldRejectNegativeMaxSize() {
+        assertThrows(IllegalArgumentException.class, () -> new AnalysisCache(tempDir.toFile(), -1));
+    }
+    
+    private static CachedAnalysis sampleAnalysis(int seed) {
+        List<TextBlock> blocks = new ArrayList<>();
+        List<WhitespaceGap> gaps = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            blocks.add(new TextBlock(i * 50f, i * 50f + 20f, seed, "block " + i));
+            gaps.add(new WhitespaceGap(30f, i * 50f + 20f, seed, i));
+        }
+        return new CachedAnalysis(blocks, gaps, seed + 1);
+    }
+}
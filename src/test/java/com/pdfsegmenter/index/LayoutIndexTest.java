@@ -0,0 +1,163 @@
+package com.pdfsegmenter.index;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.model.CutPoint;
+import com.pdfsegmenter.model.TextBlock;
+import com.pdfsegmenter.model.WhitespaceGap;
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.pdfsegmenter.testing.TestPdfs.createSectionPdf;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutIndexTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void shouldReadBackAnalyzedColumns() throws IOException {
+        File pdf = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 6);
+        PDFAnalyzer analyzer = new PDFAnalyzer();
+        PDFAnalyzer.AnalysisResult analysis = analyzer.analyze(pdf, 2);
+        File indexFile = tempDir.resolve("doc.layout").toFile();
+        
+        LayoutIndexWriter.write(analysis, indexFile);
+        LayoutIndex index = LayoutIndex.open(indexFile);
+        
+        assertEquals(6, index.getTotalPages());
+        assertEquals(analysis.getTextBlocks().size(), index.getBlockCount());
+        assertEquals(analysis.getGaps().size(), index.getGapCount());
+        for (int i = 0; i < index.getBlockCount(); i++) {
+            TextBlock block = analysis.getTextBlocks().get(i);
+            assertEquals(block.getStartY(), index.blockStartY(i));
+            assertEquals(block.getEndY(), index.blockEndY(i));
+            assertEquals(block.getPageNumber(), index.blockPage(i));
+        }
+        for (int i = 0; i < index.getGapCount(); i++) {
+            WhitespaceGap gap = analysis.getGaps().get(i);
+            assertEquals(gap.getGapSize(), index.gapSize(i));
+            assertEquals(gap.getYPosition(), index.gapY(i));
+            assertEquals(gap.getPageNumber(), index.gapPage(i));
+            assertEquals(gap.getBlockIndexBefore(), index.gapBlockBefore(i));
+        }
+        for (int page = 0; page < index.getTotalPages(); page++) {
+            int first = index.firstBlockOfPage(page);
+            for (int i = first; i < first + index.blockCountOfPage(page); i++) {
+                assertEquals(page, index.blockPage(i));
+            }
+        }
+        for (int numCuts = 0; numCuts <= index.getGapCount() + 1; numCuts++) {
+            assertCutPointsEqual(analyzer.determineCutPoints(analysis.getGaps(), numCuts), index.cutPoints(numCuts));
+        }
+    }
+    
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 7L, 42L, 1234L})
+    void shouldRankGapsLikeTheAnalyzer(long seed) throws IOException {
+        Random random = new Random(seed);
+        List<TextBlock> blocks = new ArrayList<>();
+        List<WhitespaceGap> gaps = new ArrayList<>();
+        int pages = 1 + random.nextInt(20);
+        for (int page = 0; page < pages; page++) {
+            for (int i = random.nextInt(8); i > 0; i--) {
+                blocks.add(new TextBlock(random.nextFloat() * 700, random.nextFloat() * 700, page, ""));
+                if (random.nextBoolean()) {
+                    // Few distinct sizes, so many ties.
+                    gaps.add(new WhitespaceGap(1 + random.nextInt(5) * 10f, random.nextFloat() * 700, page, blocks.size() - 1));
+                }
+            }
+        }
+        File indexFile = tempDir.resolve("random.layout").toFile();
+        
+        LayoutIndexWriter.write(blocks, gaps, pages, indexFile);
+        LayoutIndex index = LayoutIndex.open(indexFile);
+        
+        PDFAnalyzer analyzer = new PDFAnalyzer();
+        for (int numCuts : new int[] {1, 2, 5, 10, gaps.size(), gaps.size() + 3}) {
+            assertCutPointsEqual(analyzer.determineCutPoints(gaps, numCuts), index.cutPoints(numCuts));
+        }
+        int total = 0;
+        for (int page = 0; page < pages; page++) {
+            total += index.blockCountOfPage(page);
+        }
+        assertEquals(blocks.size(), total);
+    }
+    
+    @Test
+    void shouldRecutSourceFromIndex() throws IOException {
+        File pdf = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 8);
+        PDFSegmenter segmenter = new PDFSegmenter();
+        List<File> expected = segmenter.segment(pdf, 4, tempDir.resolve("expected").toFile());
+        File indexFile = tempDir.resolve("doc.layout").toFile();
+        LayoutIndexWriter.write(new PDFAnalyzer().analyze(pdf, 1), indexFile);
+        
+        List<File> actual;
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            actual = segmenter.writeSegments(doc, pdf, LayoutIndex.open(indexFile).toAnalysisResult(4),
+                    tempDir.resolve("actual").toFile());
+        }
+        
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            try (PDDocument expectedDoc = PDDocument.load(expected.get(i));
+                 PDDocument actualDoc = PDDocument.load(actual.get(i))) {
+                assertEquals(expectedDoc.getNumberOfPages(), actualDoc.getNumberOfPages());
+            }
+        }
+    }
+    
+    @Test
+    void shouldRejectOtherVersionsAndCorruptFiles() throws IOException {
+        File indexFile = tempDir.resolve("doc.layout").toFile();
+        LayoutIndexWriter.write(List.of(new TextBlock(1f, 2f, 0, "a")), List.of(), 1, indexFile);
+        
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.seek(4);
+            file.writeInt(LayoutIndexFormat.VERSION + 1);
+        }
+        IOException version = assertThrows(IOException.class, () -> LayoutIndex.open(indexFile));
+        assertTrue(version.getMessage().contains("version"));
+        
+        LayoutIndexWriter.write(List.of(new TextBlock(1f, 2f, 0, "a")), List.of(), 1, indexFile);
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(file.length() - 4);
+        }
+        assertThrows(IOException.class, () -> LayoutIndex.open(indexFile));
+        
+        Files.write(indexFile.toPath(), "not an index".getBytes());
+        assertThrows(IOException.class, () -> LayoutIndex.open(indexFile));
+    }
+    
+    @Test
+    void shouldRejectStreamingAnalysis() throws IOException {
+        File pdf = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 3);
+        PDFAnalyzer.AnalysisResult streaming = new PDFAnalyzer().analyzeStreaming(pdf, 2);
+        
+        assertThrows(IllegalArgumentException.class, () ->
+            LayoutIndexWriter.write(streaming, tempDir.resolve("doc.layout").toFile())
+        );
+    }
+    
+    private static void assertCutPointsEqual(List<CutPoint> expected, List<CutPoint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPageNumber(), actual.get(i).getPageNumber(), "page of cut " + i);
+            assertEquals(expected.get(i).getYPosition(), actual.get(i).getYPosition(), "y of cut " + i);
+            assertEquals(expected.get(i).getBlockIndex(), actual.get(i).getBlockIndex(), "block of cut " + i);
+        }
+    }
+}
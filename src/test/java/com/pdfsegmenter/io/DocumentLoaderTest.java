@@ -0,0 +1,143 @@
+package com.pdfsegmenter.io;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentLoaderTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void shouldReadMappedFileAcrossRegions() throws IOException {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        File file = tempDir.resolve("data.bin").toFile();
+        Files.write(file.toPath(), data);
+        DocumentLoader loader = new DocumentLoader(MemoryPolicy.mainMemoryOnly(), true, 16);
+        
+        MappedFileReader reader = loader.openMapped(file);
+        assertEquals(100, reader.length());
+        assertEquals(data[0] & 0xff, reader.read());
+        
+        reader.seek(14);
+        byte[] chunk = new byte[40];
+        assertEquals(40, reader.read(chunk));
+        assertArrayEquals(Arrays.copyOfRange(data, 14, 54), chunk);
+        assertEquals(54, reader.getPosition());
+        
+        assertEquals(data[54] & 0xff, reader.peek());
+        reader.rewind(6);
+        assertArrayEquals(Arrays.copyOfRange(data, 48, 80), reader.readFully(32));
+        assertEquals(20, reader.available());
+        assertEquals(20, reader.read(chunk));
+        assertTrue(reader.isEOF());
+        assertEquals(-1, reader.read());
+        assertEquals(-1, reader.read(chunk));
+        
+        reader.seek(90);
+        assertThrows(EOFException.class, () -> reader.readFully(11));
+        
+        reader.close();
+        assertTrue(reader.isClosed());
+        assertThrows(IOException.class, reader::read);
+    }
+    
+    @Test
+    void shouldLoadSameDocumentFromMapping() throws IOException {
+        File pdf = createPdf(tempDir.resolve("doc.pdf").toFile(), 5);
+        // Small regions so that the parser's reads cross region boundaries.
+        DocumentLoader mapped = new DocumentLoader(MemoryPolicy.mainMemoryOnly(), true, 4096);
+        
+        try (PDDocument expected = new DocumentLoader().load(pdf);
+             PDDocument actual = mapped.load(pdf)) {
+            assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+            assertEquals(new PDFTextStripper().getText(expected), new PDFTextStripper().getText(actual));
+        }
+        assertEquals(0, mapped.mappedFileCount());
+    }
+    
+    @Test
+    void shouldShareOneMappingBetweenHandles() throws IOException {
+        File pdf = createPdf(tempDir.resolve("doc.pdf").toFile(), 2);
+        DocumentLoader loader = new DocumentLoader(MemoryPolicy.mainMemoryOnly(), true);
+        
+        PDDocument first = loader.load(pdf);
+        PDDocument second = loader.load(pdf);
+        assertEquals(1, loader.mappedFileCount());
+        
+        first.close();
+        assertEquals(1, loader.mappedFileCount());
+        assertEquals(2, second.getNumberOfPages());
+        second.close();
+        assertEquals(0, loader.mappedFileCount());
+    }
+    
+    @Test
+    void shouldMapAgainWhenFileChanges() throws IOException {
+        File pdf = createPdf(tempDir.resolve("doc.pdf").toFile(), 2);
+        DocumentLoader loader = new DocumentLoader(MemoryPolicy.mainMemoryOnly(), true);
+        
+        try (PDDocument before = loader.load(pdf)) {
+            File replacement = createPdf(tempDir.resolve("new.pdf").toFile(), 3);
+            Files.move(replacement.toPath(), pdf.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (PDDocument after = loader.load(pdf)) {
+                assertEquals(2, before.getNumberOfPages());
+                assertEquals(3, after.getNumberOfPages());
+            }
+        }
+        assertEquals(0, loader.mappedFileCount());
+    }
+    
+    @Test
+    void shouldFailCleanlyOnInvalidInput() throws IOException {
+        File broken = tempDir.resolve("broken.pdf").toFile();
+        Files.write(broken.toPath(), "not a pdf".getBytes());
+        DocumentLoader loader = new DocumentLoader(MemoryPolicy.mainMemoryOnly(), true);
+        
+        assertThrows(IOException.class, () -> loader.load(broken));
+        assertEquals(0, loader.mappedFileCount());
+    }
+    
+    private static File createPdf(File file, int pageCount) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            for (int p = 0; p < pageCount; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(50, 700);
+                    for (int line = 0; line < 20; line++) {
+                        content.showText("Page " + (p + 1) + " line " + (line + 1));
+                        content.newLineAtOffset(0, -14);
+                    }
+                    content.endText();
+                }
+            }
+            
+            doc.save(file);
+        }
+        
+        return file;
+    }
+}
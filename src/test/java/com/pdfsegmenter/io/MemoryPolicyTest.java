@@ -0,0 +1,55 @@
+package com.pdfsegmenter.io;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryPolicyTest {
+    
+    @Test
+    void shouldParseMainMemoryPolicy() {
+        MemoryPolicy policy = MemoryPolicy.parse("main");
+        
+        assertEquals(MemoryPolicy.Mode.MAIN_MEMORY, policy.getMode());
+        assertTrue(policy.toMemoryUsageSetting().useMainMemory());
+        assertFalse(policy.toMemoryUsageSetting().useTempFile());
+    }
+    
+    @Test
+    void shouldParseTempFilePolicy() {
+        MemoryUsageSetting setting = MemoryPolicy.parse("temp").toMemoryUsageSetting();
+        
+        assertFalse(setting.useMainMemory());
+        assertTrue(setting.useTempFile());
+    }
+    
+    @Test
+    void shouldParseMixedPolicyWithSizeSuffix() {
+        MemoryPolicy policy = MemoryPolicy.parse("mixed:64M");
+        
+        assertEquals(MemoryPolicy.Mode.MIXED, policy.getMode());
+        assertEquals(64L << 20, policy.getMaxMainMemoryBytes());
+        
+        MemoryUsageSetting setting = policy.toMemoryUsageSetting();
+        assertTrue(setting.useMainMemory());
+        assertTrue(setting.useTempFile());
+        assertEquals(64L << 20, setting.getMaxMainMemoryBytes());
+    }
+    
+    @Test
+    void shouldApplyTempDir() {
+        File dir = new File("scratch");
+        MemoryUsageSetting setting = MemoryPolicy.tempFileOnly().withTempDir(dir).toMemoryUsageSetting();
+        
+        assertEquals(dir, setting.getTempDir());
+    }
+    
+    @Test
+    void shouldRejectUnknownPolicy() {
+        assertThrows(IllegalArgumentException.class, () -> MemoryPolicy.parse("disk"));
+        assertThrows(IllegalArgumentException.class, () -> MemoryPolicy.parse("mixed:lots"));
+    }
+}
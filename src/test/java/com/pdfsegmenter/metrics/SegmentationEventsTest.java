@@ -0,0 +1,121 @@
+package com.pdfsegmenter.metrics;
+
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import com.pdfsegmenter.segmenter.SegmentationReport;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static com.pdfsegmenter.testing.TestPdfs.createSectionPdf;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentationEventsTest {
+    
+    private static final String[] EVENT_NAMES = {
+        "pdfsegmenter.DocumentLoad", "pdfsegmenter.PageExtraction", "pdfsegmenter.LineGrouping",
+        "pdfsegmenter.GapFinding", "pdfsegmenter.CutSelection", "pdfsegmenter.SegmentSave"
+    };
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void shouldEmitEventForEveryStageWhileRecording() throws IOException {
+        File pdf = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 3);
+        String path = pdf.getAbsolutePath();
+        
+        SegmentationReport report;
+        Path dump = tempDir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : EVENT_NAMES) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            report = new PDFSegmenter().segmentWithReport(pdf, 2, tempDir.resolve("out").toFile());
+            recording.stop();
+            recording.dump(dump);
+        }
+        Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(dump).stream()
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName(), TreeMap::new,
+                        Collectors.toList()));
+        
+        List<RecordedEvent> loads = events.get("pdfsegmenter.DocumentLoad");
+        assertEquals(1, loads.size());
+        assertEquals(path, loads.get(0).getString("documentPath"));
+        assertEquals(3, loads.get(0).getInt("pages"));
+        assertEquals(pdf.length(), loads.get(0).getLong("bytesRead"));
+        
+        List<RecordedEvent> pages = events.get("pdfsegmenter.PageExtraction");
+        assertEquals(List.of(0, 1, 2), pageIndexes(pages));
+        for (RecordedEvent page : pages) {
+            assertEquals(path, page.getString("documentPath"));
+            assertTrue(page.getInt("glyphCount") > 0);
+        }
+        
+        List<RecordedEvent> groupings = events.get("pdfsegmenter.LineGrouping");
+        assertEquals(List.of(0, 1, 2), pageIndexes(groupings));
+        int blocks = 0;
+        for (RecordedEvent grouping : groupings) {
+            blocks += grouping.getInt("blockCount");
+        }
+        assertEquals(report.getAnalysis().getBlockCount(), blocks);
+        
+        RecordedEvent gaps = events.get("pdfsegmenter.GapFinding").get(0);
+        assertEquals(blocks, gaps.getInt("blockCount"));
+        assertEquals(report.getAnalysis().getGaps().size(), gaps.getInt("gapCount"));
+        
+        RecordedEvent cuts = events.get("pdfsegmenter.CutSelection").get(0);
+        assertEquals(path, cuts.getString("documentPath"));
+        assertEquals(2, cuts.getInt("cutCount"));
+        
+        List<RecordedEvent> saves = events.get("pdfsegmenter.SegmentSave");
+        assertEquals(report.getSegments().size(), saves.size());
+        for (RecordedEvent save : saves) {
+            File segment = report.getSegments().get(save.getInt("segmentIndex"));
+            assertEquals(path, save.getString("documentPath"));
+            assertEquals(segment.getAbsolutePath(), save.getString("segmentPath"));
+            assertEquals(segment.length(), save.getLong("bytesWritten"));
+            assertTrue(save.getInt("pages") > 0);
+        }
+    }
+    
+    @Test
+    void shouldEmitNothingWhenEventsAreDisabled() throws IOException {
+        File pdf = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 2);
+        
+        Path dump = tempDir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : EVENT_NAMES) {
+                recording.disable(name);
+            }
+            recording.start();
+            new PDFSegmenter().segment(pdf, 1, tempDir.resolve("out").toFile());
+            recording.stop();
+            recording.dump(dump);
+        }
+        
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            assertFalse(event.getEventType().getName().startsWith("pdfsegmenter."), event.toString());
+        }
+    }
+    
+    private static List<Integer> pageIndexes(List<RecordedEvent> events) {
+        List<Integer> indexes = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            indexes.add(event.getInt("pageIndex"));
+        }
+        indexes.sort(null);
+        return indexes;
+    }
+}
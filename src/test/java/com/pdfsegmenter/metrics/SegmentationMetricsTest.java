@@ -0,0 +1,108 @@
+package com.pdfsegmenter.metrics;
+
+import com.pdfsegmenter.metrics.SegmentationMetrics.Counter;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Stage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentationMetricsTest {
+    
+    @Test
+    void shouldAccumulateTimesAndCounters() {
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        metrics.addTime(Stage.LOAD, 1_500_000_000L);
+        metrics.addTime(Stage.LOAD, 500_000_000L);
+        metrics.increment(Counter.PAGES);
+        metrics.add(Counter.PAGES, 9);
+        
+        assertEquals(2_000_000_000L, metrics.getNanos(Stage.LOAD));
+        assertEquals(0, metrics.getNanos(Stage.SAVE));
+        assertEquals(10, metrics.get(Counter.PAGES));
+    }
+    
+    @Test
+    void shouldRecordElapsedTimeAndReturnCurrentClock() {
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        long start = System.nanoTime() - 1_000;
+        
+        long now = metrics.recordSince(Stage.GAPS, start);
+        
+        assertEquals(now - start, metrics.getNanos(Stage.GAPS));
+    }
+    
+    @Test
+    void shouldMergeOtherMetrics() {
+        SegmentationMetrics first = new SegmentationMetrics();
+        first.addTime(Stage.EXTRACT, 10);
+        first.add(Counter.GLYPHS, 100);
+        SegmentationMetrics second = new SegmentationMetrics();
+        second.addTime(Stage.EXTRACT, 5);
+        second.add(Counter.GLYPHS, 50);
+        second.increment(Counter.FAILED_DOCUMENTS);
+        
+        first.merge(second);
+        
+        assertEquals(15, first.getNanos(Stage.EXTRACT));
+        assertEquals(150, first.get(Counter.GLYPHS));
+        assertEquals(1, first.get(Counter.FAILED_DOCUMENTS));
+    }
+    
+    @Test
+    void shouldBeSafeToRecordFromSeveralThreads() throws InterruptedException {
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.addTime(Stage.GROUP, 1);
+                    metrics.increment(Counter.BLOCKS);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(40_000, metrics.getNanos(Stage.GROUP));
+        assertEquals(40_000, metrics.get(Counter.BLOCKS));
+    }
+    
+    @Test
+    void shouldExportJson() {
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        metrics.add(Counter.PAGES, 12);
+        metrics.add(Counter.WRITTEN_BYTES, 4096);
+        metrics.addTime(Stage.SAVE, 42);
+        
+        String json = metrics.toJson();
+        
+        assertTrue(json.startsWith("{\"documents\":0,"));
+        assertTrue(json.contains("\"pages\":12,"));
+        assertTrue(json.contains("\"written_bytes\":4096,"));
+        assertTrue(json.contains("\"stage_nanos\":{\"load\":0,"));
+        assertTrue(json.endsWith("\"save\":42}}"));
+    }
+    
+    @Test
+    void shouldExportPrometheusText() {
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        metrics.add(Counter.PAGES, 12);
+        metrics.addTime(Stage.LOAD, 1_250_000_000L);
+        
+        String text = metrics.toPrometheus();
+        
+        assertTrue(text.contains("# TYPE pdfsegmenter_stage_seconds_total counter\n"));
+        assertTrue(text.contains("pdfsegmenter_stage_seconds_total{stage=\"load\"} 1.250000000\n"));
+        assertTrue(text.contains("# TYPE pdfsegmenter_pages_total counter\n"));
+        assertTrue(text.contains("pdfsegmenter_pages_total 12\n"));
+        for (String line : text.split("\n")) {
+            assertTrue(line.startsWith("# ") || line.matches("pdfsegmenter_[a-z_]+(\\{stage=\"[a-z]+\"\\})? [0-9.]+"), line);
+        }
+    }
+}
@@ -16,6 +16,8 @@ class CutPointTest {
         assertEquals(2, cut.getPageNumber());
         assertEquals(300f, cut.getYPosition());
         assertEquals(5, cut.getBlockIndex());
+        assertEquals(0f, cut.getGapSize());
+        assertEquals(42f, new CutPoint(2, 300f, 5, 42f).getGapSize());
     }
 
     @Test
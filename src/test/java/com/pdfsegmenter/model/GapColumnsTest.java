@@ -0,0 +1,40 @@
+package com.pdfsegmenter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GapColumnsTest {
+    
+    @Test
+    void shouldMatchGapsItWasBuiltFrom() {
+        List<WhitespaceGap> gaps = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            gaps.add(new WhitespaceGap(i % 37, 792f - i % 700, i / 25, i));
+        }
+        
+        GapColumns columns = GapColumns.of(gaps);
+        
+        assertEquals(gaps.size(), columns.size());
+        for (int i = 0; i < gaps.size(); i++) {
+            WhitespaceGap gap = gaps.get(i);
+            assertEquals(gap.getGapSize(), columns.getGapSize(i));
+            assertEquals(gap.getYPosition(), columns.getYPosition(i));
+            assertEquals(gap.getPageNumber(), columns.getPageNumber(i));
+            assertEquals(gap.getBlockIndexBefore(), columns.getBlockIndexBefore(i));
+        }
+        assertEquals(gaps.get(4999).toString(), columns.get(4999).toString());
+    }
+    
+    @Test
+    void shouldRejectIndexOutOfRange() {
+        GapColumns columns = new GapColumns();
+        columns.add(12f, 300f, 0, 0);
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.getGapSize(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.get(1));
+    }
+}
@@ -0,0 +1,65 @@
+package com.pdfsegmenter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextBlockColumnsTest {
+    
+    @Test
+    void shouldStoreBlocksAcrossChunks() {
+        TextBlockColumns columns = new TextBlockColumns();
+        for (int i = 0; i < 10000; i++) {
+            columns.add(i, i + 0.5f, i / 40, "Block " + i);
+        }
+        
+        assertEquals(10000, columns.size());
+        for (int i : new int[] {0, 15, 16, 4095, 4096, 9999}) {
+            assertEquals(i, columns.getStartY(i));
+            assertEquals(i + 0.5f, columns.getEndY(i));
+            assertEquals(i / 40, columns.getPageNumber(i));
+            assertEquals("Block " + i, columns.getContent(i));
+            
+            TextBlock block = columns.get(i);
+            assertEquals(i, block.getStartY());
+            assertEquals(i / 40, block.getPageNumber());
+            assertEquals("Block " + i, block.getContent());
+        }
+    }
+    
+    @Test
+    void shouldKeepLazyContentLazy() {
+        AtomicInteger builds = new AtomicInteger();
+        List<TextBlock> blocks = new ArrayList<>();
+        blocks.add(new TextBlock(10f, 20f, 0, "Eager"));
+        blocks.add(new TextBlock(30f, 40f, 0, () -> "Built " + builds.incrementAndGet()));
+        
+        TextBlockColumns columns = TextBlockColumns.of(blocks);
+        assertEquals(40f, columns.getEndY(1));
+        assertEquals(0, builds.get());
+        
+        assertEquals("Built 1", columns.get(1).getContent());
+        assertEquals("Built 1", columns.getContent(1));
+        assertEquals("Eager", columns.getContent(0));
+        assertEquals(1, builds.get());
+    }
+    
+    @Test
+    void shouldReturnSameInstanceWhenAlreadyColumnar() {
+        TextBlockColumns columns = new TextBlockColumns();
+        assertSame(columns, TextBlockColumns.of(columns));
+    }
+    
+    @Test
+    void shouldRejectIndexOutOfRange() {
+        TextBlockColumns columns = new TextBlockColumns();
+        columns.add(10f, 20f, 0, "Only");
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.getStartY(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.get(-1));
+    }
+}
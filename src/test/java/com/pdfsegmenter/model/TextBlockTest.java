@@ -1,6 +1,9 @@
 package com.pdfsegmenter.model;
 
 import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TextBlockTest {
@@ -27,6 +30,17 @@ class TextBlockTest {
         assertEquals("Sample text", block.getContent());
     }
 
+    @Test
+    void shouldBuildLazyContentOnce() {
+        AtomicInteger builds = new AtomicInteger();
+        TextBlock block = new TextBlock(100f, 200f, 2, () -> "Built " + builds.incrementAndGet());
+        
+        assertEquals(0, builds.get());
+        assertEquals("Built 1", block.getContent());
+        assertEquals("Built 1", block.getContent());
+        assertEquals(1, builds.get());
+    }
+
     @Test
     void shouldFormatToString() {
         TextBlock block = new TextBlock(100f, 200f, 1, "Test");
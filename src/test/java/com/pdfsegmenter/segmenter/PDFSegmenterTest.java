@@ -1,19 +1,40 @@
 package com.pdfsegmenter.segmenter;
 
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.cache.AnalysisCache;
+import com.pdfsegmenter.io.MemoryPolicy;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Counter;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Stage;
+import com.pdfsegmenter.testing.CountingDocumentLoader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import static com.pdfsegmenter.testing.TestPdfs.createSectionPdf;
 import static org.junit.jupiter.api.Assertions.*;
 
 class PDFSegmenterTest {
@@ -109,6 +130,378 @@ class PDFSegmenterTest {
         assertFalse(segments.isEmpty());
     }
     
+    @Test
+    void shouldLoadSourceDocumentOnlyOnce() throws IOException {
+        CountingDocumentLoader loader = new CountingDocumentLoader();
+        PDFSegmenter countingSegmenter = new PDFSegmenter(new PDFAnalyzer(), loader);
+        File inputPdf = createTestPdf("input.pdf");
+        File outputDir = tempDir.resolve("output").toFile();
+        
+        List<File> segments = countingSegmenter.segment(inputPdf, 2, outputDir);
+        
+        assertTrue(segments.size() > 1);
+        assertEquals(1, loader.getLoads());
+    }
+    
+    @Test
+    void shouldSegmentWithTempFileMemoryPolicy() throws IOException {
+        PDFSegmenter tempFileSegmenter = new PDFSegmenter(new PDFAnalyzer(), MemoryPolicy.tempFileOnly());
+        File inputPdf = createTestPdf("input.pdf");
+        File outputDir = tempDir.resolve("output").toFile();
+        
+        List<File> segments = tempFileSegmenter.segment(inputPdf, 2, outputDir);
+        
+        assertEquals(segmenter.segment(inputPdf, 2, tempDir.resolve("reference").toFile()).size(), segments.size());
+        for (File segment : segments) {
+            try (PDDocument doc = PDDocument.load(segment)) {
+                assertTrue(doc.getNumberOfPages() > 0);
+            }
+        }
+    }
+    
+    @Test
+    void shouldWriteSameSegmentsWithConcurrentWriters() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 8);
+        List<File> sequential = segmenter.segment(inputPdf, 5, tempDir.resolve("sequential").toFile());
+        
+        PDFSegmenter concurrent = new PDFSegmenter();
+        concurrent.setWriterThreads(4);
+        List<File> parallel = concurrent.segment(inputPdf, 5, tempDir.resolve("parallel").toFile());
+        
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getName(), parallel.get(i).getName());
+            try (PDDocument expected = PDDocument.load(sequential.get(i));
+                 PDDocument actual = PDDocument.load(parallel.get(i))) {
+                assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+            }
+        }
+    }
+    
+    @Test
+    void shouldReportFailedSegmentsWithAnyWriterCount() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 8);
+        
+        for (int threads : new int[] {1, 3}) {
+            File outputDir = tempDir.resolve("output" + threads).toFile();
+            assertTrue(new File(outputDir, "multi_segment_2.pdf").mkdirs());
+            PDFSegmenter writer = new PDFSegmenter();
+            writer.setWriterThreads(threads);
+            
+            SegmentWriteException e = assertThrows(SegmentWriteException.class, () ->
+                writer.segment(inputPdf, 5, outputDir)
+            );
+            
+            assertEquals(List.of(2), List.copyOf(e.getFailures().keySet()));
+            assertTrue(new File(outputDir, "multi_segment_1.pdf").isFile());
+            assertTrue(new File(outputDir, "multi_segment_3.pdf").isFile());
+            assertTrue(new File(outputDir, "multi_segment_6.pdf").isFile());
+        }
+    }
+    
+    @Test
+    void shouldWriteSameSegmentsWithStreamingAnalysis() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 8);
+        List<File> expected = segmenter.segment(inputPdf, 4, tempDir.resolve("full").toFile());
+        
+        PDFSegmenter streaming = new PDFSegmenter();
+        streaming.setStreamingAnalysis(true);
+        List<File> actual = streaming.segment(inputPdf, 4, tempDir.resolve("streaming").toFile());
+        
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            try (PDDocument expectedDoc = PDDocument.load(expected.get(i));
+                 PDDocument actualDoc = PDDocument.load(actual.get(i))) {
+                assertEquals(expectedDoc.getNumberOfPages(), actualDoc.getNumberOfPages());
+            }
+        }
+    }
+    
+    @Test
+    void shouldReportWriteMetrics() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 8);
+        PDFSegmenter concurrent = new PDFSegmenter();
+        concurrent.setWriterThreads(3);
+        
+        SegmentationReport report = concurrent.segmentWithReport(inputPdf, 3, tempDir.resolve("output").toFile());
+        SegmentationMetrics metrics = report.getMetrics();
+        
+        long writtenBytes = 0;
+        for (File segment : report.getSegments()) {
+            writtenBytes += segment.length();
+        }
+        assertEquals(report.getSegments().size(), metrics.get(Counter.SEGMENTS));
+        assertEquals(writtenBytes, metrics.get(Counter.WRITTEN_BYTES));
+        assertEquals(inputPdf.length(), metrics.get(Counter.READ_BYTES));
+        assertEquals(8, metrics.get(Counter.PAGES));
+        for (Stage stage : Stage.values()) {
+            if (stage != Stage.CACHE) {
+                assertTrue(metrics.getNanos(stage) > 0, stage.getKey());
+            }
+        }
+    }
+    
+    @Test
+    void shouldWriteSameSegmentsFromCachedAnalysis() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 8);
+        List<File> expected = segmenter.segment(inputPdf, 5, tempDir.resolve("uncached").toFile());
+        
+        PDFAnalyzer analyzer = new PDFAnalyzer();
+        analyzer.setAnalysisCache(new AnalysisCache(tempDir.resolve("cache").toFile(), 1 << 20));
+        PDFSegmenter cached = new PDFSegmenter(analyzer);
+        cached.segment(inputPdf, 2, tempDir.resolve("warm").toFile());
+        SegmentationReport report = cached.segmentWithReport(inputPdf, 5, tempDir.resolve("cached").toFile());
+        
+        assertEquals(1, report.getMetrics().get(Counter.CACHE_HITS));
+        assertEquals(expected.size(), report.getSegments().size());
+        for (int i = 0; i < expected.size(); i++) {
+            try (PDDocument expectedDoc = PDDocument.load(expected.get(i));
+                 PDDocument actualDoc = PDDocument.load(report.getSegments().get(i))) {
+                assertEquals(expectedDoc.getNumberOfPages(), actualDoc.getNumberOfPages());
+            }
+        }
+    }
+    
+    @Test
+    void shouldCropSharedPageToEachSegmentsRange() throws IOException {
+        File inputPdf = createTestPdf("test.pdf");
+        segmenter.setCropToCuts(true);
+        
+        List<File> segments = segmenter.segment(inputPdf, 2, tempDir.resolve("output").toFile());
+        
+        assertEquals(3, segments.size());
+        assertEquals("Header Section", visibleText(segments.get(0)));
+        assertEquals("Main content paragraph one Main content paragraph two", visibleText(segments.get(1)));
+        assertEquals("Footer Section", visibleText(segments.get(2)));
+        
+        float previousLowerY = PDRectangle.LETTER.getUpperRightY();
+        for (File segment : segments) {
+            try (PDDocument doc = PDDocument.load(segment)) {
+                PDPage page = doc.getPage(0);
+                assertEquals(page.getMediaBox().getUpperRightY(), page.getCropBox().getUpperRightY());
+                assertEquals(previousLowerY, page.getCropBox().getUpperRightY(), 0.01f);
+                previousLowerY = page.getCropBox().getLowerLeftY();
+            }
+        }
+        assertEquals(0f, previousLowerY, 0.01f);
+    }
+    
+    @Test
+    void shouldStartNextSegmentOnNewPageWhenGapSpansPageBreak() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 3);
+        segmenter.setCropToCuts(true);
+        
+        List<File> segments = segmenter.segment(inputPdf, 2, tempDir.resolve("output").toFile());
+        
+        assertEquals(3, segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            try (PDDocument doc = PDDocument.load(segments.get(i))) {
+                assertEquals(1, doc.getNumberOfPages());
+                assertEquals(PDRectangle.LETTER.getHeight(), doc.getPage(0).getCropBox().getHeight());
+            }
+            assertEquals("Section " + (i + 1) + " heading Section " + (i + 1) + " body text",
+                    visibleText(segments.get(i)));
+        }
+    }
+    
+    @Test
+    void shouldKeepRotatedPagesWholeWhenCropping() throws IOException {
+        File inputPdf = createTestPdf("rotated.pdf");
+        try (PDDocument doc = PDDocument.load(inputPdf)) {
+            doc.getPage(0).setRotation(90);
+            doc.save(inputPdf);
+        }
+        segmenter.setCropToCuts(true);
+        
+        List<File> segments = segmenter.segment(inputPdf, 1, tempDir.resolve("output").toFile());
+        
+        for (File segment : segments) {
+            try (PDDocument doc = PDDocument.load(segment)) {
+                assertEquals(PDRectangle.LETTER.getHeight(), doc.getPage(0).getMediaBox().getHeight());
+            }
+        }
+    }
+    
+    @Test
+    void shouldCopyContentStreamsWithoutReencoding() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 6);
+        List<File> segments = segmenter.segment(inputPdf, 2, tempDir.resolve("output").toFile());
+        
+        try (PDDocument source = PDDocument.load(inputPdf);
+             PDDocument first = PDDocument.load(segments.get(0))) {
+            for (int i = 0; i < first.getNumberOfPages(); i++) {
+                assertArrayEquals(rawContents(source.getPage(i)), rawContents(first.getPage(i)), "page " + i);
+            }
+        }
+    }
+    
+    @Test
+    void shouldKeepInheritedResources() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("inherited.pdf").toFile(), 4);
+        try (PDDocument doc = PDDocument.load(inputPdf)) {
+            COSDictionary shared = doc.getPage(0).getResources().getCOSObject();
+            for (PDPage page : doc.getPages()) {
+                page.getCOSObject().removeItem(COSName.RESOURCES);
+            }
+            doc.getPages().getCOSObject().setItem(COSName.RESOURCES, shared);
+            doc.save(inputPdf);
+        }
+        
+        List<File> segments = segmenter.segment(inputPdf, 1, tempDir.resolve("output").toFile());
+        
+        for (File segment : segments) {
+            try (PDDocument doc = PDDocument.load(segment)) {
+                for (PDPage page : doc.getPages()) {
+                    assertTrue(page.getResources().getFontNames().iterator().hasNext());
+                }
+                assertTrue(new PDFTextStripper().getText(doc).contains("Section"));
+            }
+        }
+    }
+    
+    @Test
+    void shouldWriteSharedImageOncePerSegment() throws IOException {
+        File inputPdf = tempDir.resolve("images.pdf").toFile();
+        try (PDDocument doc = new PDDocument()) {
+            BufferedImage pixels = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+            for (int x = 0; x < 64; x++) {
+                for (int y = 0; y < 64; y++) {
+                    pixels.setRGB(x, y, x * 4 << 16 | y * 4);
+                }
+            }
+            PDImageXObject image = LosslessFactory.createFromImage(doc, pixels);
+            for (int p = 0; p < 6; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.drawImage(image, 50, 500);
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(50, 300 - 20 * p);
+                    content.showText("Caption " + p);
+                    content.endText();
+                }
+            }
+            doc.save(inputPdf);
+        }
+        
+        List<File> segments = segmenter.segment(inputPdf, 1, tempDir.resolve("output").toFile());
+        
+        for (File segment : segments) {
+            try (PDDocument doc = PDDocument.load(segment)) {
+                Set<Long> imageObjects = new HashSet<>();
+                for (PDPage page : doc.getPages()) {
+                    COSDictionary xObjects = page.getResources().getCOSObject().getCOSDictionary(COSName.XOBJECT);
+                    for (COSName name : xObjects.keySet()) {
+                        imageObjects.add(((COSObject) xObjects.getItem(name)).getObjectNumber());
+                    }
+                }
+                assertEquals(1, imageObjects.size(), segment.getName());
+            }
+        }
+    }
+    
+    @Test
+    void shouldApplySavedPlanWithoutAnalyzingAgain() throws IOException {
+        File inputPdf = createTestPdf("test.pdf");
+        segmenter.setCropToCuts(true);
+        List<File> expected = segmenter.segment(inputPdf, 2, tempDir.resolve("direct").toFile());
+        
+        File planFile = tempDir.resolve("test.plan").toFile();
+        SegmentationPlan plan = segmenter.plan(inputPdf, 2);
+        plan.write(planFile);
+        SegmentationPlan loaded = SegmentationPlan.read(planFile);
+        
+        assertEquals(inputPdf.getAbsoluteFile(), loaded.getSourceFile());
+        assertEquals(1, loaded.getTotalPages());
+        assertTrue(loaded.isCropToCuts());
+        assertEquals(plan.getCutPoints().size(), loaded.getCutPoints().size());
+        for (int i = 0; i < plan.getCutPoints().size(); i++) {
+            assertEquals(plan.getCutPoints().get(i).getYPosition(), loaded.getCutPoints().get(i).getYPosition());
+            assertEquals(plan.getCutPoints().get(i).getGapSize(), loaded.getCutPoints().get(i).getGapSize());
+        }
+        for (int i = 0; i < plan.getSegments().size(); i++) {
+            assertEquals(plan.getSegments().get(i).getEndY(), loaded.getSegments().get(i).getEndY());
+        }
+        
+        // The writer's own crop setting is ignored in favour of the plan's, and the analyzer is never called.
+        PDFAnalyzer failingAnalyzer = new PDFAnalyzer() {
+            @Override
+            public AnalysisResult analyze(File pdfFile, PDDocument document, int numCuts,
+                                          SegmentationMetrics metrics) {
+                throw new AssertionError("apply must not analyze");
+            }
+        };
+        SegmentationMetrics metrics = new SegmentationMetrics();
+        List<File> applied = new PDFSegmenter(failingAnalyzer).apply(loaded, tempDir.resolve("applied").toFile(), metrics);
+        
+        assertEquals(expected.size(), applied.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), applied.get(i).getName());
+            assertEquals(visibleText(expected.get(i)), visibleText(applied.get(i)));
+        }
+        assertEquals(applied.size(), metrics.get(Counter.SEGMENTS));
+        assertEquals(0, metrics.get(Counter.DOCUMENTS));
+    }
+    
+    @Test
+    void shouldRejectPlanForChangedSource() throws IOException {
+        File inputPdf = createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 4);
+        SegmentationPlan plan = segmenter.plan(inputPdf, 2);
+        
+        createSectionPdf(tempDir.resolve("multi.pdf").toFile(), 3);
+        assertTrue(inputPdf.setLastModified(plan.getSourceLastModified() + 2000));
+        
+        assertFalse(plan.matchesSource());
+        assertThrows(IOException.class, () -> segmenter.apply(plan, tempDir.resolve("output").toFile()));
+    }
+    
+    @Test
+    void shouldRejectMalformedPlan() throws IOException {
+        File planFile = tempDir.resolve("broken.plan").toFile();
+        SegmentationPlan plan = segmenter.plan(createTestPdf("test.pdf"), 2);
+        plan.write(planFile);
+        List<String> lines = Files.readAllLines(planFile.toPath());
+        
+        Files.write(planFile.toPath(), lines.subList(0, lines.size() - 1));
+        assertThrows(IOException.class, () -> SegmentationPlan.read(planFile));
+        
+        lines.set(lines.size() - 1, "segment 0 1");
+        Files.write(planFile.toPath(), lines);
+        assertThrows(IOException.class, () -> SegmentationPlan.read(planFile));
+        
+        Files.write(planFile.toPath(), List.of("not a plan"));
+        assertThrows(IOException.class, () -> SegmentationPlan.read(planFile));
+    }
+    
+    @Test
+    void shouldRejectNonPositiveWriterThreads() {
+        assertThrows(IllegalArgumentException.class, () -> segmenter.setWriterThreads(0));
+    }
+    
+    // Text whose baseline falls inside the page's CropBox, i.e. what a viewer or OCR pass would see.
+    private static String visibleText(File pdf) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper() {
+            @Override
+            protected void processTextPosition(TextPosition position) {
+                float y = position.getY();
+                if (y >= 0 && y <= getCurrentPage().getCropBox().getHeight()) {
+                    super.processTextPosition(position);
+                }
+            }
+        };
+        try (PDDocument doc = PDDocument.load(pdf)) {
+            return stripper.getText(doc).trim().replaceAll("\\s+", " ");
+        }
+    }
+    
+    private static byte[] rawContents(PDPage page) throws IOException {
+        COSStream contents = (COSStream) page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        try (InputStream in = contents.createRawInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+    
     private File createTestPdf(String name) throws IOException {
         File pdfFile = tempDir.resolve(name).toFile();
         
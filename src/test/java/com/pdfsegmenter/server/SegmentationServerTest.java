@@ -0,0 +1,360 @@
+package com.pdfsegmenter.server;
+
+import com.pdfsegmenter.analyzer.PDFAnalyzer;
+import com.pdfsegmenter.io.DocumentLoader;
+import com.pdfsegmenter.metrics.SegmentationMetrics;
+import com.pdfsegmenter.metrics.SegmentationMetrics.Counter;
+import com.pdfsegmenter.segmenter.PDFSegmenter;
+import com.pdfsegmenter.testing.CountingDocumentLoader;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.pdfsegmenter.testing.TestPdfs.createSectionPdf;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentationServerTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private final HttpClient client = HttpClient.newHttpClient();
+    private SegmentationServer server;
+    
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+    
+    @Test
+    void shouldReturnCutPlanAsJson() throws Exception {
+        File input = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 4);
+        PDFAnalyzer.AnalysisResult expected = new PDFAnalyzer().analyze(input, 2);
+        start(new PDFSegmenter());
+        
+        HttpResponse<String> response = post("/segment?numCuts=2", Files.readAllBytes(input.toPath()));
+        
+        assertEquals(200, response.statusCode());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(""));
+        String body = response.body();
+        assertTrue(body.startsWith("{\"pages\":4,\"blocks\":" + expected.getBlockCount() + ",\"cuts\":["), body);
+        assertEquals(expected.getCutPoints().size(), body.split("\"page\":", -1).length - 1);
+        assertTrue(body.contains("\"block_index\":" + expected.getCutPoints().get(0).getBlockIndex()));
+        assertTrue(body.contains("\"metrics\":{\"documents\":1,"));
+    }
+    
+    @Test
+    void shouldReturnSegmentsAsZip() throws Exception {
+        File input = createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 5);
+        start(new PDFSegmenter());
+        
+        HttpResponse<byte[]> response = client.send(request("/segment?numCuts=3&format=zip")
+                .POST(HttpRequest.BodyPublishers.ofFile(input.toPath())).build(), HttpResponse.BodyHandlers.ofByteArray());
+        
+        assertEquals(200, response.statusCode());
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(response.body()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                try (PDDocument segment = PDDocument.load(zip.readAllBytes())) {
+                    assertTrue(segment.getNumberOfPages() > 0);
+                }
+            }
+        }
+        assertEquals(List.of("document_segment_1.pdf", "document_segment_2.pdf", "document_segment_3.pdf",
+                "document_segment_4.pdf"), names);
+        assertEquals(4, server.getMetrics().get(Counter.SEGMENTS));
+    }
+    
+    @Test
+    void shouldRejectInvalidRequests() throws Exception {
+        byte[] pdf = Files.readAllBytes(createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 2).toPath());
+        server = new SegmentationServer(new PDFSegmenter());
+        server.setMaxUploadBytes(pdf.length - 1);
+        server.start(new InetSocketAddress("127.0.0.1", 0));
+        
+        assertEquals(400, post("/segment", pdf).statusCode());
+        assertEquals(400, post("/segment?numCuts=0", pdf).statusCode());
+        assertEquals(400, post("/segment?numCuts=1&format=tar", pdf).statusCode());
+        assertEquals(405, client.send(request("/segment?numCuts=1").GET().build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(413, post("/segment?numCuts=1", pdf).statusCode());
+        
+        HttpResponse<String> broken = post("/segment?numCuts=1", "not a pdf".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(422, broken.statusCode());
+        assertEquals("Could not read PDF\n", broken.body());
+        assertEquals(1, server.getMetrics().get(Counter.FAILED_DOCUMENTS));
+    }
+    
+    @Test
+    void shouldRejectMalformedContentLength() throws Exception {
+        server = new SegmentationServer(new PDFSegmenter());
+        // Called directly: the JDK's HttpServer may answer a bad Content-Length itself before any handler runs.
+        StubExchange exchange = new StubExchange("POST", "/segment?numCuts=1");
+        exchange.getRequestHeaders().set("Content-Length", "12x");
+        
+        server.handleSegment(exchange);
+        
+        assertEquals(400, exchange.getResponseCode());
+        assertEquals("Content-Length must be a valid integer\n", exchange.body.toString(StandardCharsets.UTF_8));
+        assertTrue(exchange.closed);
+    }
+    
+    @Test
+    void shouldNotLeakFailureDetailsToClient() throws Exception {
+        byte[] pdf = Files.readAllBytes(createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 2).toPath());
+        PDFAnalyzer failing = new PDFAnalyzer() {
+            @Override
+            public AnalysisResult analyze(File pdfFile, PDDocument document, int numCuts,
+                                          SegmentationMetrics metrics) throws IOException {
+                throw new IOException("Cannot read " + pdfFile);
+            }
+        };
+        start(new PDFSegmenter(failing));
+        
+        HttpResponse<String> response = post("/segment?numCuts=1", pdf);
+        
+        assertEquals(500, response.statusCode());
+        assertEquals("Segmentation failed\n", response.body());
+        assertEquals(1, server.getMetrics().get(Counter.FAILED_DOCUMENTS));
+    }
+    
+    @Test
+    void shouldNotHoldWorkerWhileUploadIsStalled() throws Exception {
+        byte[] pdf = Files.readAllBytes(createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 2).toPath());
+        start(new PDFSegmenter());
+        CountDownLatch uploading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StubExchange stalled = new StubExchange("POST", "/segment?numCuts=1", new InputStream() {
+            @Override
+            public int read() {
+                uploading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+        });
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> {
+            try {
+                server.handleSegment(stalled);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertTrue(uploading.await(10, TimeUnit.SECONDS));
+        
+        // The only worker is free while the first request is still uploading.
+        HttpResponse<String> response = client.sendAsync(request("/segment?numCuts=1")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(pdf)).build(), HttpResponse.BodyHandlers.ofString())
+                .get(10, TimeUnit.SECONDS);
+        release.countDown();
+        upload.get(10, TimeUnit.SECONDS);
+        
+        assertEquals(200, response.statusCode());
+        assertEquals(422, stalled.getResponseCode());
+    }
+    
+    @Test
+    void shouldAnswerBusyWhenQueueIsFull() throws Exception {
+        byte[] pdf = Files.readAllBytes(createSectionPdf(tempDir.resolve("doc.pdf").toFile(), 2).toPath());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DocumentLoader loader = new CountingDocumentLoader(loads -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server = new SegmentationServer(new PDFSegmenter(new PDFAnalyzer(), loader));
+        server.setWorkers(1);
+        server.setQueueCapacity(0);
+        server.start(new InetSocketAddress("127.0.0.1", 0));
+        
+        CompletableFuture<HttpResponse<String>> first = client.sendAsync(request("/segment?numCuts=1")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(pdf)).build(), HttpResponse.BodyHandlers.ofString());
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        
+        HttpResponse<String> rejected = post("/segment?numCuts=1", pdf);
+        release.countDown();
+        
+        assertEquals(503, rejected.statusCode());
+        assertTrue(rejected.headers().firstValue("Retry-After").isPresent());
+        assertEquals(200, first.get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(1, server.getMetrics().get(Counter.REJECTED_REQUESTS));
+        // The client can see the first response before the server has freed its slot.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.freeSlots() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(200, post("/segment?numCuts=1", pdf).statusCode());
+        
+        String metrics = client.send(request("/metrics").GET().build(), HttpResponse.BodyHandlers.ofString()).body();
+        assertTrue(metrics.contains("pdfsegmenter_rejected_requests_total 1"), metrics);
+        assertTrue(metrics.contains("pdfsegmenter_documents_total 2"), metrics);
+    }
+    
+    @Test
+    void shouldRejectInvalidSettings() {
+        SegmentationServer settings = new SegmentationServer(new PDFSegmenter());
+        
+        assertThrows(IllegalArgumentException.class, () -> settings.setWorkers(0));
+        assertThrows(IllegalArgumentException.class, () -> settings.setQueueCapacity(-1));
+        assertThrows(IllegalArgumentException.class, () -> settings.setMaxUploadBytes(0));
+        assertThrows(IllegalStateException.class, settings::getPort);
+    }
+    
+    private void start(PDFSegmenter segmenter) throws IOException {
+        server = new SegmentationServer(segmenter);
+        server.setTempDir(tempDir.toFile());
+        server.start(new InetSocketAddress("127.0.0.1", 0));
+    }
+    
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path));
+    }
+    
+    private HttpResponse<String> post(String path, byte[] body) throws IOException, InterruptedException {
+        return client.send(request(path).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+    
+    private static class StubExchange extends HttpExchange {
+        private final Headers requestHeaders = new Headers();
+        private final Headers responseHeaders = new Headers();
+        private final String method;
+        private final URI uri;
+        private final InputStream requestBody;
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int responseCode = -1;
+        boolean closed;
+        
+        StubExchange(String method, String uri) {
+            this(method, uri, new ByteArrayInputStream(new byte[0]));
+        }
+        
+        StubExchange(String method, String uri, InputStream requestBody) {
+            this.method = method;
+            this.uri = URI.create(uri);
+            this.requestBody = requestBody;
+        }
+        
+        @Override
+        public Headers getRequestHeaders() {
+            return requestHeaders;
+        }
+        
+        @Override
+        public Headers getResponseHeaders() {
+            return responseHeaders;
+        }
+        
+        @Override
+        public URI getRequestURI() {
+            return uri;
+        }
+        
+        @Override
+        public String getRequestMethod() {
+            return method;
+        }
+        
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+        
+        @Override
+        public InputStream getRequestBody() {
+            return requestBody;
+        }
+        
+        @Override
+        public OutputStream getResponseBody() {
+            return body;
+        }
+        
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) {
+            responseCode = rCode;
+        }
+        
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+        
+        @Override
+        public int getResponseCode() {
+            return responseCode;
+        }
+        
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+        
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+        
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+        
+        @Override
+        public void setAttribute(String name, Object value) {
+        }
+        
+        @Override
+        public void setStreams(InputStream i, OutputStream o) {
+        }
+        
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.pdfsegmenter.testing;
+
+import com.pdfsegmenter.io.DocumentLoader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+// Counts load calls. The optional hook runs on the loading thread before the document is opened and is given the
+// count including this call, so tests can observe or hold up loads.
+public class CountingDocumentLoader extends DocumentLoader {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final IntConsumer beforeLoad;
+    
+    public CountingDocumentLoader() {
+        this(loads -> { });
+    }
+    
+    public CountingDocumentLoader(IntConsumer beforeLoad) {
+        this.beforeLoad = beforeLoad;
+    }
+    
+    public int getLoads() {
+        return loads.get();
+    }
+    
+    @Override
+    public PDDocument load(File file) throws IOException {
+        beforeLoad.accept(loads.incrementAndGet());
+        return super.load(file);
+    }
+}
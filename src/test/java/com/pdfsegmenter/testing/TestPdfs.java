@@ -0,0 +1,44 @@
+package com.pdfsegmenter.testing;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public final class TestPdfs {
+    
+    private TestPdfs() {
+    }
+    
+    // A heading and a body line on every page, the body 10pt lower on each page than on the one before, so no
+    // two gaps are the same size.
+    public static File createSectionPdf(File pdfFile, int pageCount) throws IOException {
+        Files.createDirectories(pdfFile.getAbsoluteFile().getParentFile().toPath());
+        
+        try (PDDocument doc = new PDDocument()) {
+            for (int p = 0; p < pageCount; p++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(50, 700);
+                    content.showText("Section " + (p + 1) + " heading");
+                    content.newLineAtOffset(0, -60 - 10 * p);
+                    content.showText("Section " + (p + 1) + " body text");
+                    content.endText();
+                }
+            }
+            
+            doc.save(pdfFile);
+        }
+        
+        return pdfFile;
+    }
+}